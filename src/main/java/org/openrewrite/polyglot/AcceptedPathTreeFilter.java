@@ -0,0 +1,81 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.RequiredArgsConstructor;
+import org.openrewrite.jgit.dircache.DirCacheIterator;
+import org.openrewrite.jgit.lib.FileMode;
+import org.openrewrite.jgit.treewalk.FileTreeIterator;
+import org.openrewrite.jgit.treewalk.TreeWalk;
+import org.openrewrite.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.LongPredicate;
+
+/**
+ * Applies the exclusion, ignored directory, gitignore and size rules of {@link OmniParser#acceptedPaths(java.nio.file.Path, java.nio.file.Path)}
+ * inside the {@link TreeWalk} itself, so that rejected directories are never entered and rejected files never
+ * reach the walk loop. Expects the working tree at index 0 and the index at index 1 of the walk.
+ */
+@RequiredArgsConstructor
+final class AcceptedPathTreeFilter extends TreeFilter {
+    private final PathExclusions exclusions;
+    private final Collection<String> ignoredDirectories;
+    private final LongPredicate withinSizeThreshold;
+
+    @Override
+    public boolean include(TreeWalk walker) throws IOException {
+        FileTreeIterator workingTreeIterator = walker.getTree(0, FileTreeIterator.class);
+        if (workingTreeIterator == null) {
+            return false;
+        }
+        FileMode mode = workingTreeIterator.getEntryFileMode();
+        if (mode.equals(FileMode.TREE)) {
+            if (ignoredDirectories.contains(walker.getNameString())) {
+                return false;
+            }
+        } else if (mode.equals(FileMode.EXECUTABLE_FILE) || mode.equals(FileMode.REGULAR_FILE)) {
+            // Use getEntryLength() (stat-based) instead of getEntryContentLength()
+            // which reads the entire file through jgit's filter pipeline.
+            if (!withinSizeThreshold.test(workingTreeIterator.getEntryLength())) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+        if (exclusions.isExcluded(walker.getPathString())) {
+            return false;
+        }
+        // Only treat as ignored if it matches gitignore AND is not tracked in the index
+        return !workingTreeIterator.isEntryIgnored() || walker.getTree(1, DirCacheIterator.class) != null;
+    }
+
+    @Override
+    public boolean shouldBeRecursive() {
+        return false;
+    }
+
+    @Override
+    public TreeFilter clone() {
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ACCEPTED_PATHS";
+    }
+}
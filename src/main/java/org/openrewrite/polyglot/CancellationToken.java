@@ -0,0 +1,90 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Stops the walks and parses of every {@link OmniParser} it is {@link OmniParser.Builder#cancellationToken(CancellationToken)
+ * given to}. Once cancelled, a walk or parse in progress throws a {@link CancellationException} at its next
+ * directory, file or input, and worker threads are interrupted. A token stays cancelled, so a parser built
+ * with it refuses all further work.
+ */
+public final class CancellationToken {
+    private final Set<Runnable> listeners = new LinkedHashSet<>();
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        for (Runnable listener : toRun) {
+            listener.run();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @throws CancellationException if this token has been cancelled.
+     */
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("The parse was cancelled");
+        }
+    }
+
+    /**
+     * @return How many listeners are waiting for this token to be cancelled.
+     */
+    synchronized int getListenerCount() {
+        return listeners.size();
+    }
+
+    /**
+     * Run {@code listener} when this token is cancelled, or right away if it already is.
+     *
+     * @return Deregisters the listener, for when the work it would stop has finished. As a long-lived token holds
+     * on to its listeners, and whatever they refer to, until then, this must not wait for a stream to be closed.
+     */
+    Runnable onCancel(Runnable listener) {
+        synchronized (this) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return () -> {
+                    synchronized (this) {
+                        listeners.remove(listener);
+                    }
+                };
+            }
+        }
+        listener.run();
+        return () -> {
+        };
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An immutable list of paths under a root directory that holds each path as the index of its directory in a
+ * table of distinct directories plus its file name packed as UTF-8 into a shared byte array. Where a
+ * {@code List<Path>} of a multi-million-file tree keeps a {@link Path} and its strings alive per file, this
+ * costs two {@code int}s and the bytes of the file name, and a {@link Path} is only created when an element
+ * is read. Reading the same element twice returns equal but not identical paths.
+ */
+public final class CompactPathList extends AbstractList<Path> implements RandomAccess {
+    private final Path rootDir;
+
+    /**
+     * The '/'-separated directories relative to the root directory, where "" is the root directory itself.
+     */
+    private final String[] directories;
+
+    /**
+     * Directories are few compared to files, so each is resolved once on first use.
+     */
+    private final Path[] directoryPaths;
+
+    private final int[] directoryIndices;
+    private final int[] nameOffsets;
+    private final byte[] names;
+
+    private CompactPathList(Path rootDir, String[] directories, int[] directoryIndices, int[] nameOffsets, byte[] names) {
+        this.rootDir = rootDir;
+        this.directories = directories;
+        this.directoryPaths = new Path[directories.length];
+        this.directoryIndices = directoryIndices;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+    }
+
+    @Override
+    public Path get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of range for " + size() + " paths");
+        }
+        int directory = directoryIndices[index];
+        Path dir = directoryPaths[directory];
+        if (dir == null) {
+            // Racing readers resolve equal paths, so there is nothing to guard
+            dir = directories[directory].isEmpty() ? rootDir : rootDir.resolve(directories[directory]);
+            directoryPaths[directory] = dir;
+        }
+        return dir.resolve(new String(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index], UTF_8));
+    }
+
+    @Override
+    public int size() {
+        return directoryIndices.length;
+    }
+
+    /**
+     * Accumulates paths in the order they are added.
+     */
+    static final class Builder {
+        private final Path rootDir;
+        private final Map<String, Integer> directoryIndex = new HashMap<>();
+        private final List<String> directories = new ArrayList<>();
+
+        private int size;
+        private int[] directoryIndices = new int[64];
+        private int[] nameOffsets = new int[65];
+        private byte[] names = new byte[1024];
+
+        Builder(Path rootDir) {
+            this.rootDir = rootDir;
+        }
+
+        /**
+         * @param relativePath The '/'-separated path relative to the root directory.
+         */
+        void add(String relativePath) {
+            int slash = relativePath.lastIndexOf('/');
+            String directory = slash < 0 ? "" : relativePath.substring(0, slash);
+            Integer index = directoryIndex.get(directory);
+            if (index == null) {
+                index = directories.size();
+                directories.add(directory);
+                directoryIndex.put(directory, index);
+            }
+            byte[] name = relativePath.substring(slash + 1).getBytes(UTF_8);
+
+            if (size == directoryIndices.length) {
+                directoryIndices = Arrays.copyOf(directoryIndices, size * 2);
+                nameOffsets = Arrays.copyOf(nameOffsets, size * 2 + 1);
+            }
+            int offset = nameOffsets[size];
+            if (offset + name.length > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, offset + name.length));
+            }
+            System.arraycopy(name, 0, names, offset, name.length);
+            directoryIndices[size] = index;
+            nameOffsets[++size] = offset + name.length;
+        }
+
+        CompactPathList build() {
+            return new CompactPathList(rootDir, directories.toArray(new String[0]),
+                    Arrays.copyOf(directoryIndices, size),
+                    Arrays.copyOf(nameOffsets, size + 1),
+                    Arrays.copyOf(names, nameOffsets[size]));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts, across all parses of an {@link OmniParser}, how many values in the parsed source files were
+ * replaced by an equal instance that was already held, and roughly how many bytes of heap that saves.
+ */
+public class CompactionStats {
+    private final AtomicLong replaced = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+
+    void record(long bytes) {
+        replaced.incrementAndGet();
+        bytesSaved.addAndGet(bytes);
+    }
+
+    /**
+     * @return The number of values replaced by a canonical instance.
+     */
+    public long getReplaced() {
+        return replaced.get();
+    }
+
+    /**
+     * @return An estimate of the heap no longer retained by the replaced values, in bytes.
+     */
+    public long getBytesSaved() {
+        return bytesSaved.get();
+    }
+}
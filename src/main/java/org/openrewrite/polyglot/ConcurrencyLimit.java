@@ -0,0 +1,115 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how many parse tasks run at once, halving the limit whenever its {@link Pressure} reports that a
+ * collection left the heap above its threshold, and raising it again by one for every task that completes
+ * while the heap has stayed below its threshold for a while. Tasks already running are never stopped, the
+ * limit only holds back the next ones.
+ */
+final class ConcurrencyLimit {
+    private static final long RAMP_UP_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final int max;
+    private final Pressure pressure;
+    private final LongSupplier nanoTime;
+
+    private int limit;
+    private int active;
+    private long seenEvents;
+    private long changedNanos;
+
+    ConcurrencyLimit(int max, Pressure pressure) {
+        this(max, pressure, System::nanoTime);
+    }
+
+    ConcurrencyLimit(int max, Pressure pressure, LongSupplier nanoTime) {
+        this.max = max;
+        this.pressure = pressure;
+        this.nanoTime = nanoTime;
+        this.limit = max;
+        this.seenEvents = pressure.getEvents();
+        this.changedNanos = nanoTime.getAsLong();
+    }
+
+    /**
+     * @return The number of tasks currently allowed to run at once.
+     */
+    synchronized int getLimit() {
+        backOffOnPressure();
+        return limit;
+    }
+
+    /**
+     * Wait until another task may run.
+     *
+     * @return Releases the permit to run. Only the first call has any effect, so that a task which is abandoned
+     * can give up its permit while its worker may still release it later.
+     */
+    synchronized Runnable acquire() throws InterruptedException {
+        backOffOnPressure();
+        while (active >= limit) {
+            wait();
+            backOffOnPressure();
+        }
+        active++;
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                release();
+            }
+        };
+    }
+
+    private synchronized void release() {
+        active--;
+        backOffOnPressure();
+        if (limit < max && nanoTime.getAsLong() - changedNanos >= RAMP_UP_NANOS && !pressure.isUnderPressure()) {
+            limit++;
+            changedNanos = nanoTime.getAsLong();
+        }
+        notifyAll();
+    }
+
+    private void backOffOnPressure() {
+        long events = pressure.getEvents();
+        if (events != seenEvents) {
+            seenEvents = events;
+            limit = Math.max(1, limit / 2);
+            changedNanos = nanoTime.getAsLong();
+        }
+    }
+
+    /**
+     * Reports how full the heap remains after garbage collections, see {@link HeapPressure}.
+     */
+    interface Pressure {
+        /**
+         * @return The number of times a collection has left the heap above its threshold, which only ever grows.
+         */
+        long getEvents();
+
+        /**
+         * @return true if the heap is still above its threshold after the most recent collection.
+         */
+        boolean isUnderPressure();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts, across all parses of an {@link OmniParser}, how many files were parsed and how many
+ * were instead copied from an identical file that was.
+ */
+public class DeduplicationStats {
+    private final AtomicLong parsed = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+
+    void recordParsed(long count) {
+        parsed.addAndGet(count);
+    }
+
+    void recordDuplicates(long count) {
+        duplicates.addAndGet(count);
+    }
+
+    /**
+     * @return The number of files that were parsed.
+     */
+    public long getParsed() {
+        return parsed.get();
+    }
+
+    /**
+     * @return The number of files whose source file was copied from an identical file instead of being parsed.
+     */
+    public long getDuplicates() {
+        return duplicates.get();
+    }
+
+    /**
+     * @return The fraction of files that did not need to be parsed, or 0 when nothing has been parsed yet.
+     */
+    public double getHitRate() {
+        long hits = duplicates.get();
+        long total = hits + parsed.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.FileAttributes;
+import org.openrewrite.Parser;
+import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
+import org.openrewrite.jgit.lib.Constants;
+import org.openrewrite.jgit.lib.ObjectId;
+import org.openrewrite.jgit.lib.ObjectInserter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Finds files that the same parser would parse from identical content, so that only one of each is parsed
+ * and the others are copies of its source file with their own id, source path and file attributes.
+ * <p>
+ * Files are only compared with files of the same name, since some parsers interpret content differently
+ * depending on the file name, and of the same size, so that files with a unique size are never read here.
+ * Content is identified by its git blob id, which is also the id of the file in the index when it is unmodified.
+ * <p>
+ * The content read to identify the first file of each group is handed to its parse, rather than read again,
+ * for as long as the total held that way stays within {@link #MAX_PRELOADED_BYTES}.
+ * <p>
+ * Copies share the trees beneath the source file, including their ids, with the parsed source file. Re-identifying
+ * every tree would cost about as much as parsing the copy, which is what deduplication avoids.
+ */
+final class Deduplicator {
+    static final long MAX_PRELOADED_BYTES = 64L * 1024 * 1024;
+
+    private final List<FileSource> unique = new ArrayList<>();
+
+    /**
+     * The duplicates of each unique file, keyed by the source path that its parse produces.
+     */
+    private final Map<Path, List<FileSource>> duplicates = new HashMap<>();
+
+    Deduplicator(List<FileSource> fileSources, Function<Path, @Nullable Parser> parserFor,
+                 @Nullable Path relativeTo, DeduplicationStats stats) {
+        Set<FileSource> kept = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<List<Object>, List<FileSource>> candidates = new HashMap<>();
+        for (FileSource fileSource : fileSources) {
+            Parser parser = parserFor.apply(fileSource.getPath());
+            Path fileName = fileSource.getPath().getFileName();
+            long size = sizeOf(fileSource);
+            if (parser == null || fileName == null || size < 0) {
+                kept.add(fileSource);
+            } else {
+                candidates.computeIfAbsent(asList(parser, fileName.toString(), size), k -> new ArrayList<>())
+                        .add(fileSource);
+            }
+        }
+
+        ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+        long preloaded = 0;
+        for (List<FileSource> sameNameAndSize : candidates.values()) {
+            if (sameNameAndSize.size() == 1) {
+                kept.add(sameNameAndSize.get(0));
+                continue;
+            }
+            Map<ObjectId, FileSource> byContent = new HashMap<>();
+            for (FileSource fileSource : sameNameAndSize) {
+                byte[] content;
+                try {
+                    content = Files.readAllBytes(fileSource.getPath());
+                } catch (IOException e) {
+                    // leave it to the parse to report
+                    kept.add(fileSource);
+                    continue;
+                }
+                FileSource first = byContent.putIfAbsent(formatter.idFor(Constants.OBJ_BLOB, content), fileSource);
+                if (first == null) {
+                    if (preloaded + content.length <= MAX_PRELOADED_BYTES) {
+                        fileSource.preload(content);
+                        preloaded += content.length;
+                    }
+                    kept.add(fileSource);
+                } else {
+                    duplicates.computeIfAbsent(sourcePath(first, relativeTo),
+                            k -> new ArrayList<>()).add(fileSource);
+                }
+            }
+        }
+
+        for (FileSource fileSource : fileSources) {
+            if (kept.contains(fileSource)) {
+                unique.add(fileSource);
+            }
+        }
+        stats.recordParsed(unique.size());
+        stats.recordDuplicates(fileSources.size() - unique.size());
+    }
+
+    List<FileSource> getUnique() {
+        return unique;
+    }
+
+    /**
+     * Follow each parsed source file with the copies for its duplicates.
+     */
+    Stream<SourceFile> withDuplicates(Stream<SourceFile> parsed, @Nullable Path relativeTo) {
+        if (duplicates.isEmpty()) {
+            return parsed;
+        }
+        return parsed.flatMap(sourceFile -> {
+            List<FileSource> copies = duplicates.get(sourceFile.getSourcePath());
+            if (copies == null) {
+                return Stream.of(sourceFile);
+            }
+            return Stream.concat(Stream.of(sourceFile), copies.stream().map(copy -> {
+                SourceFile duplicate = sourceFile.withId(Tree.randomId());
+                duplicate = duplicate.withSourcePath(sourcePath(copy, relativeTo));
+                return duplicate.withFileAttributes(FileAttributes.fromPath(copy.getPath()));
+            }));
+        });
+    }
+
+    private static Path sourcePath(FileSource fileSource, @Nullable Path relativeTo) {
+        return relativeTo == null ? fileSource.getPath() : relativeTo.relativize(fileSource.getPath());
+    }
+
+    private static long sizeOf(FileSource fileSource) {
+        if (fileSource.getSize() >= 0) {
+            return fileSource.getSize();
+        }
+        try {
+            return Files.size(fileSource.getPath());
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
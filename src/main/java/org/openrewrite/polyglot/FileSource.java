@@ -0,0 +1,126 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+import org.jspecify.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The source of a {@link org.openrewrite.Parser.Input} that OmniParser reads from a file. Its content may be
+ * read ahead of the parse by an {@link InputPrefetcher}, in which case the parse is handed the bytes already
+ * in memory. Otherwise, or when the input is read again, the file is opened as usual.
+ */
+final class FileSource implements Supplier<InputStream> {
+    private static final Object CONSUMED = new Object();
+
+    @Getter
+    private final Path path;
+
+    /**
+     * The size of the file in bytes as seen when it was walked, or -1 when unknown.
+     */
+    @Getter
+    private final long size;
+
+    /**
+     * Null until the content is either prefetched, in which case it holds the pending content,
+     * or consumed without having been prefetched.
+     */
+    private final AtomicReference<@Nullable Object> state = new AtomicReference<>();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    @Nullable
+    private volatile Runnable onRelease;
+
+    FileSource(Path path, long size) {
+        this.path = path;
+        this.size = size;
+    }
+
+    /**
+     * @param onRelease Called once, when the content is handed to the parse or no longer needed.
+     */
+    void onRelease(Runnable onRelease) {
+        this.onRelease = onRelease;
+    }
+
+    /**
+     * Serve {@code content}, which has already been read from the file, to the parse.
+     */
+    void preload(byte[] content) {
+        state.compareAndSet(null, CompletableFuture.completedFuture(content));
+    }
+
+    /**
+     * Start reading the file on {@code executor}, unless it has already been consumed.
+     *
+     * @return true if the read was started.
+     */
+    boolean prefetch(Executor executor) {
+        CompletableFuture<byte[]> content = new CompletableFuture<>();
+        if (!state.compareAndSet(null, content)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                content.complete(Files.readAllBytes(path));
+            } catch (Throwable t) {
+                content.completeExceptionally(t);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public InputStream get() {
+        Object prefetched = state.getAndSet(CONSUMED);
+        try {
+            if (prefetched instanceof CompletableFuture) {
+                //noinspection unchecked
+                return new ByteArrayInputStream(((CompletableFuture<byte[]>) prefetched).join());
+            }
+        } catch (CompletionException ignored) {
+            // read the file directly so that the parse sees the underlying failure
+        } finally {
+            release();
+        }
+        try {
+            return Files.newInputStream(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void release() {
+        Runnable release = onRelease;
+        if (release != null && released.compareAndSet(false, true)) {
+            release.run();
+        }
+    }
+}
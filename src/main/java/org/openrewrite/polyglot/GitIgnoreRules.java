@@ -0,0 +1,102 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.jgit.ignore.IgnoreNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.openrewrite.PathUtils.separatorsToUnix;
+
+/**
+ * The {@code .gitignore} rules in effect at the current point of a file system walk outside of a git
+ * repository. Each directory's rules are compiled once when the walk enters it and apply to everything
+ * beneath it, with the rules of deeper directories taking precedence, as they do in git.
+ */
+final class GitIgnoreRules {
+    private final Deque<Rules> rules = new ArrayDeque<>();
+
+    /**
+     * @param rootDir   The root of the walk, whose {@code .gitignore} and that of every directory down to
+     *                  {@code searchDir} apply to the search directory.
+     * @param searchDir The directory the walk starts in.
+     */
+    GitIgnoreRules(Path rootDir, Path searchDir) {
+        if (!searchDir.startsWith(rootDir) || searchDir.equals(rootDir)) {
+            return;
+        }
+        List<Path> ancestors = new ArrayList<>();
+        for (Path dir = searchDir.getParent(); dir != null && dir.startsWith(rootDir); dir = dir.getParent()) {
+            ancestors.add(0, dir);
+        }
+        for (Path ancestor : ancestors) {
+            enter(ancestor);
+        }
+    }
+
+    void enter(Path dir) {
+        rules.push(new Rules(dir, parse(dir.resolve(".gitignore"))));
+    }
+
+    void exit() {
+        rules.pop();
+    }
+
+    boolean isIgnored(Path path, boolean isDirectory) {
+        for (Rules r : rules) {
+            if (r.node != null && path.startsWith(r.dir) && !path.equals(r.dir)) {
+                Boolean ignored = r.node.checkIgnored(separatorsToUnix(r.dir.relativize(path).toString()), isDirectory);
+                if (ignored != null) {
+                    return ignored;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static @Nullable IgnoreNode parse(Path gitignore) {
+        if (!Files.isRegularFile(gitignore)) {
+            return null;
+        }
+        IgnoreNode node = new IgnoreNode();
+        try (InputStream in = Files.newInputStream(gitignore)) {
+            node.parse(in);
+        } catch (IOException e) {
+            return null;
+        }
+        return node;
+    }
+
+    private static final class Rules {
+        private final Path dir;
+
+        @Nullable
+        private final IgnoreNode node;
+
+        private Rules(Path dir, @Nullable IgnoreNode node) {
+            this.dir = dir;
+            this.node = node;
+        }
+    }
+}
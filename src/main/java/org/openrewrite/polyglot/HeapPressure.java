@@ -0,0 +1,90 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import java.lang.management.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Watches how full the tenured heap pools remain after a garbage collection, which is the point at which
+ * parsing more inputs at once risks collections that free too little and, eventually, an {@link OutOfMemoryError}.
+ * A pool counts as full when a collection leaves it more than 80% used. The pools are only observed, so their
+ * usage thresholds, which other code in the JVM may rely on, are left as they are.
+ */
+final class HeapPressure implements ConcurrencyLimit.Pressure {
+    private static final double THRESHOLD = 0.8;
+
+    private final List<MemoryPoolMXBean> pools = new ArrayList<>();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private long seenCollections;
+    private long events;
+
+    private HeapPressure() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            // Of the heap pools, typically only the old generation supports usage thresholds, and it is the one
+            // whose occupancy after a collection says how much of the heap is really live
+            if (pool.getType() == MemoryType.HEAP && pool.isValid() && pool.isUsageThresholdSupported() &&
+                pool.getUsage().getMax() > 0) {
+                pools.add(pool);
+            }
+        }
+        seenCollections = collections();
+    }
+
+    static HeapPressure get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Collections are noticed when this is called, so several between two calls count as one event.
+     */
+    @Override
+    public synchronized long getEvents() {
+        long collections = collections();
+        if (collections != seenCollections) {
+            seenCollections = collections;
+            if (isUnderPressure()) {
+                events++;
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public boolean isUnderPressure() {
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage afterCollection = pool.getCollectionUsage();
+            if (afterCollection != null && afterCollection.getUsed() >= pool.getUsage().getMax() * THRESHOLD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static class Holder {
+        static final HeapPressure INSTANCE = new HeapPressure();
+    }
+}
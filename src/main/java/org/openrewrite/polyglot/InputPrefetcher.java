@@ -0,0 +1,248 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads file inputs on a separate I/O executor in the order they will be parsed, so that parsing finds
+ * their content already in memory. The reads are paced by a coordinator on a platform thread. Reading stays at most {@code maxInputs} inputs and {@code maxBytes} bytes
+ * ahead of the parse, although a single input larger than {@code maxBytes} is still read once everything
+ * before it has been handed over.
+ * <p>
+ * When an input is handed to the parse, it and every input before it are considered consumed. A parser
+ * that skips an input therefore cannot stall reading ahead.
+ * <p>
+ * Reading ahead stops when the prefetcher is closed, or when the parse has not consumed an input for
+ * {@link #IDLE_TIMEOUT_MILLIS}, e.g. because a stream was abandoned without being closed. Inputs that
+ * were not read ahead by then are read by the parse itself.
+ */
+final class InputPrefetcher implements AutoCloseable {
+    static final long IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Executor executor;
+    private final int maxInputs;
+    private final long maxBytes;
+
+    private List<FileSource> sources;
+
+    /**
+     * The bytes accounted for each source that was read ahead, or -1 for those that were not.
+     */
+    private long[] accounted;
+
+    /**
+     * Sources before this index have been consumed.
+     */
+    private int consumed;
+
+    private int outstandingInputs;
+    private long outstandingBytes;
+    private long peakBytes;
+    private long lastConsumedNanos;
+    private boolean closed;
+
+    /**
+     * Every source has been either read ahead or consumed, so there is nothing left to stop.
+     */
+    private boolean finished;
+
+    /**
+     * Deregisters this from the cancellation token it is {@link #closeOn(CancellationToken) closed on}, if any.
+     */
+    @Nullable
+    private Runnable stopOnCancel;
+
+    InputPrefetcher(Executor executor, int maxInputs, long maxBytes) {
+        this.executor = executor;
+        this.maxInputs = Math.max(1, maxInputs);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * I/O is mostly waiting, so on Java 21 and later each read can get its own virtual thread. Earlier
+     * runtimes fall back to a pool of platform threads.
+     */
+    static Executor ioExecutor(boolean virtualThreads) {
+        return virtualThreads && VirtualThreads.EXECUTOR != null ? VirtualThreads.EXECUTOR : PlatformThreads.EXECUTOR;
+    }
+
+    void start(List<FileSource> sources) {
+        synchronized (this) {
+            this.sources = sources;
+            this.accounted = new long[sources.size()];
+            Arrays.fill(accounted, -1);
+            this.lastConsumedNanos = System.nanoTime();
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            int index = i;
+            sources.get(i).onRelease(() -> consume(index));
+        }
+        // Reading ahead waits on this object's monitor, which would pin the carrier of a virtual thread,
+        // so only the reads themselves go to the I/O executor
+        PlatformThreads.EXECUTOR.execute(this::readAhead);
+    }
+
+    /**
+     * Close this when {@code cancellationToken} is cancelled, for as long as there is anything left to read ahead.
+     */
+    void closeOn(CancellationToken cancellationToken) {
+        Runnable deregister = cancellationToken.onCancel(this::close);
+        synchronized (this) {
+            if (!isDone()) {
+                stopOnCancel = deregister;
+                return;
+            }
+        }
+        deregister.run();
+    }
+
+    private boolean isDone() {
+        return closed || finished || (sources != null && consumed >= sources.size());
+    }
+
+    /**
+     * Deregister from the cancellation token once there is nothing left to read ahead.
+     */
+    private void stopOnCancelIfDone() {
+        Runnable deregister;
+        synchronized (this) {
+            if (!isDone()) {
+                return;
+            }
+            deregister = stopOnCancel;
+            stopOnCancel = null;
+        }
+        if (deregister != null) {
+            deregister.run();
+        }
+    }
+
+    private void readAhead() {
+        for (int i = 0; i < sources.size(); i++) {
+            FileSource source = sources.get(i);
+            long size = sizeOf(source);
+            synchronized (this) {
+                try {
+                    while (!closed && outstandingInputs > 0 &&
+                           (outstandingInputs >= maxInputs || outstandingBytes + size > maxBytes)) {
+                        long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastConsumedNanos);
+                        if (idleMillis >= IDLE_TIMEOUT_MILLIS) {
+                            closed = true;
+                            break;
+                        }
+                        wait(IDLE_TIMEOUT_MILLIS - idleMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closed = true;
+                }
+                if (closed) {
+                    break;
+                }
+                if (i >= consumed && source.prefetch(executor)) {
+                    accounted[i] = size;
+                    outstandingInputs++;
+                    outstandingBytes += size;
+                    peakBytes = Math.max(peakBytes, outstandingBytes);
+                }
+            }
+        }
+        synchronized (this) {
+            finished = true;
+        }
+        stopOnCancelIfDone();
+    }
+
+    private void consume(int index) {
+        synchronized (this) {
+            lastConsumedNanos = System.nanoTime();
+            for (; consumed <= index; consumed++) {
+                if (accounted[consumed] >= 0) {
+                    outstandingInputs--;
+                    outstandingBytes -= accounted[consumed];
+                }
+            }
+            notifyAll();
+        }
+        stopOnCancelIfDone();
+    }
+
+    /**
+     * @return The most bytes that were read ahead of the parse at any one time.
+     */
+    synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    private static long sizeOf(FileSource source) {
+        if (source.getSize() >= 0) {
+            return source.getSize();
+        }
+        try {
+            return Files.size(source.getPath());
+        } catch (IOException e) {
+            // the parse will report the failure when it reads the file
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        stopOnCancelIfDone();
+    }
+
+    private static class VirtualThreads {
+        static final @Nullable ExecutorService EXECUTOR;
+
+        static {
+            ExecutorService executor;
+            try {
+                executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                executor = null;
+            }
+            EXECUTOR = executor;
+        }
+    }
+
+    private static class PlatformThreads {
+        static final ExecutorService EXECUTOR;
+
+        static {
+            AtomicInteger thread = new AtomicInteger();
+            EXECUTOR = Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "omni-parser-io-" + thread.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.SourceFile;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Stands in for a parser that is expensive to build. Paths that cannot be accepted by the real parser
+ * are rejected by a cheap check on their name, so the parser is only built once a path that it may accept
+ * turns up, or ahead of time by {@link #warmUp()}.
+ * <p>
+ * The builder is kept so that parallel parses can give each worker its own instance, see {@link ParserPool}.
+ * Instances built from the same builder share whatever state was configured on it, such as a
+ * {@code JavaTypeFactory}. When that state is not safe to use concurrently, it is passed as the
+ * {@code sharedState} and parses through per-worker instances are serialized on it.
+ */
+@RequiredArgsConstructor
+final class LazyParser implements Parser {
+    private final Parser.Builder builder;
+
+    /**
+     * A pre-filter on paths, so that the parser need not be built to reject most of them. Must hold for every
+     * path the built parser accepts and may hold for others, which the built parser then rejects.
+     */
+    private final Predicate<Path> candidate;
+
+    /**
+     * State shared by every instance built from the builder that must not be used concurrently, or null.
+     */
+    @Nullable
+    private final Object sharedState;
+
+    /**
+     * Whether the built parser parses each input on its own, so that its inputs may be parsed in separate
+     * tasks and placed in separate shards. Stated by whoever wraps the parser, as it cannot be told from
+     * the builder.
+     */
+    @Getter
+    private final boolean perFile;
+
+    private final AtomicBoolean warmingUp = new AtomicBoolean();
+
+    @Nullable
+    private volatile Parser parser;
+
+    Parser get() {
+        Parser p = parser;
+        if (p == null) {
+            synchronized (this) {
+                p = parser;
+                if (p == null) {
+                    p = builder.build();
+                    parser = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return A new instance for one parse worker to use at a time.
+     */
+    Parser newInstance() {
+        Parser instance = builder.build();
+        return sharedState == null ? instance : new Serialized(instance, sharedState);
+    }
+
+    /**
+     * Build the parser in the background, so that it is likely ready by the time the first input is parsed.
+     * Only the first call has any effect.
+     */
+    void warmUp() {
+        if (parser == null && warmingUp.compareAndSet(false, true)) {
+            Thread thread = new Thread(() -> {
+                try {
+                    get();
+                } catch (RuntimeException ignored) {
+                    // building is retried, and fails visibly, once the parser is first used
+                }
+            }, "omni-parser-warm-up");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Override
+    public boolean accept(Path path) {
+        return candidate.test(path) && get().accept(path);
+    }
+
+    @Override
+    public Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo, ExecutionContext ctx) {
+        return get().parseInputs(sources, relativeTo, ctx);
+    }
+
+    @Override
+    public Parser reset() {
+        Parser p = parser;
+        if (p != null) {
+            p.reset();
+        }
+        return this;
+    }
+
+    @Override
+    public Path sourcePathFromSourceText(Path prefix, String sourceCode) {
+        return get().sourcePathFromSourceText(prefix, sourceCode);
+    }
+
+    @RequiredArgsConstructor
+    private static final class Serialized implements Parser {
+        private final Parser parser;
+        private final Object lock;
+
+        @Override
+        public Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo, ExecutionContext ctx) {
+            // Parse while holding the lock, as the parse may be lazy and would otherwise escape it
+            List<SourceFile> sourceFiles;
+            synchronized (lock) {
+                try (Stream<SourceFile> parsed = parser.parseInputs(sources, relativeTo, ctx)) {
+                    sourceFiles = parsed.collect(toList());
+                }
+            }
+            return sourceFiles.stream();
+        }
+
+        @Override
+        public boolean accept(Path path) {
+            return parser.accept(path);
+        }
+
+        @Override
+        public Parser reset() {
+            parser.reset();
+            return this;
+        }
+
+        @Override
+        public Path sourcePathFromSourceText(Path prefix, String sourceCode) {
+            return parser.sourcePathFromSourceText(prefix, sourceCode);
+        }
+    }
+
+    static Predicate<Path> fileName(Predicate<String> candidate) {
+        return path -> {
+            Path fileName = path.getFileName();
+            return fileName != null && candidate.test(fileName.toString());
+        };
+    }
+}
@@ -16,45 +16,70 @@
 package org.openrewrite.polyglot;
 
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.jspecify.annotations.Nullable;
 import org.openrewrite.ExecutionContext;
+import org.openrewrite.FileAttributes;
 import org.openrewrite.InMemoryExecutionContext;
 import org.openrewrite.Parser;
 import org.openrewrite.SourceFile;
+import org.openrewrite.Tree;
 import org.openrewrite.docker.DockerParser;
 import org.openrewrite.gradle.GradleParser;
 import org.openrewrite.groovy.GroovyParser;
 import org.openrewrite.hcl.HclParser;
 import org.openrewrite.java.internal.JavaTypeFactory;
 import org.openrewrite.jgit.api.Git;
+import org.openrewrite.jgit.dircache.DirCache;
 import org.openrewrite.jgit.dircache.DirCacheIterator;
+import org.openrewrite.jgit.lib.Constants;
+import org.openrewrite.jgit.lib.CoreConfig;
 import org.openrewrite.jgit.lib.FileMode;
+import org.openrewrite.jgit.lib.ObjectId;
+import org.openrewrite.jgit.lib.ObjectReader;
 import org.openrewrite.jgit.lib.Repository;
+import org.openrewrite.jgit.revwalk.RevWalk;
 import org.openrewrite.jgit.treewalk.FileTreeIterator;
 import org.openrewrite.jgit.treewalk.TreeWalk;
+import org.openrewrite.jgit.treewalk.filter.AndTreeFilter;
 import org.openrewrite.jgit.treewalk.filter.PathFilter;
+import org.openrewrite.jgit.treewalk.filter.PathFilterGroup;
+import org.openrewrite.jgit.treewalk.filter.TreeFilter;
+import org.openrewrite.jgit.util.FS;
 import org.openrewrite.json.JsonParser;
 import org.openrewrite.properties.PropertiesParser;
 import org.openrewrite.protobuf.ProtoParser;
+import org.openrewrite.quark.QuarkParser;
+import org.openrewrite.text.PlainTextParser;
 import org.openrewrite.toml.TomlParser;
+import org.openrewrite.tree.ParseError;
 import org.openrewrite.xml.XmlParser;
 import org.openrewrite.yaml.YamlParser;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.ObjLongConsumer;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 import static org.openrewrite.PathUtils.separatorsToUnix;
+import static org.openrewrite.polyglot.LazyParser.fileName;
 
 @SuppressWarnings("unused")
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
@@ -77,6 +102,23 @@ public class OmniParser implements Parser {
         }
     };
 
+    /**
+     * Parsers known to parse each input on its own, without context from the other inputs. Matched by exact
+     * class, so that a subclass which adds cross-file context is not split up.
+     */
+    private static final Set<Class<?>> PER_FILE_PARSERS = new HashSet<>(asList(
+            JsonParser.class,
+            XmlParser.class,
+            YamlParser.class,
+            PropertiesParser.class,
+            ProtoParser.class,
+            TomlParser.class,
+            DockerParser.class,
+            HclParser.class,
+            PlainTextParser.class,
+            QuarkParser.class
+    ));
+
     private static final Collection<String> DEFAULT_IGNORED_DIRECTORIES = new HashSet<>(asList(
             "build",
             "target",
@@ -94,8 +136,44 @@ public class OmniParser implements Parser {
     private final Collection<PathMatcher> exclusionMatchers;
     private final int sizeThresholdMb;
     private final boolean parallel;
+    private final int parallelism;
+    private final boolean preserveOrder;
+
+    @Nullable
+    private final Duration parseTimeout;
+
+    private final boolean virtualThreadReads;
+    private final int prefetchInputs;
+    private final long prefetchBytes;
+    private final boolean warmUpParsers;
+    private final boolean deduplicate;
+    private final boolean snapshotDirectories;
+    private final boolean respectGitIgnore;
+    private final boolean skipLinkedCopies;
+
+    @Nullable
+    private final SourceFileCompactor compactor;
+
+    @Nullable
+    private final ParseCache parseCache;
+
+    @Nullable
+    private final CancellationToken cancellationToken;
+
+    @Nullable
+    private final ConcurrencyLimit concurrencyLimit;
+
     private final List<Parser> parsers;
     private final Consumer<Integer> onParse;
+    private final ParserPool parserPool = new ParserPool();
+
+    @Getter
+    private final DeduplicationStats deduplicationStats = new DeduplicationStats();
+
+    private final AtomicLong skippedLinkedCopies = new AtomicLong();
+
+    @Nullable
+    private volatile InputPrefetcher lastPrefetcher;
 
     /**
      * Does not include text and quark parsers. We leave it up to the caller to determine
@@ -122,6 +200,48 @@ public class OmniParser implements Parser {
             groovy.typeFactory(typeFactory);
             gradle.typeFactory(typeFactory);
         }
+        List<Parser> parsers = cheapResourceParsers();
+        parsers.add(groovy.build());
+        parsers.add(gradle.build());
+        return parsers;
+    }
+
+    /**
+     * Like {@link #defaultResourceParsers()} but defers building the parsers that are expensive to set up.
+     */
+    public static List<Parser> lazyResourceParsers() {
+        return lazyResourceParsers(null);
+    }
+
+    /**
+     * Like {@link #defaultResourceParsers(JavaTypeFactory)}, except that the Groovy and Gradle
+     * parsers are only built once a path they may accept is seen, or in the background when
+     * {@link Builder#warmUpParsers(boolean)} is set. The returned list holds stand-ins for them
+     * rather than {@link GroovyParser} and {@link GradleParser} instances.
+     * <p>
+     * Neither parser is safe to call concurrently, so a parallel parse gives each worker its own
+     * instance. The {@code typeFactory} is shared by those instances and is not thread-safe, so when
+     * one is supplied, Groovy and Gradle inputs are parsed one at a time. As with the parsers from
+     * {@link #defaultResourceParsers(JavaTypeFactory)}, all Groovy inputs are parsed together, as are
+     * all Gradle inputs, so that types can be attributed across them.
+     */
+    public static List<Parser> lazyResourceParsers(@Nullable JavaTypeFactory typeFactory) {
+        GroovyParser.Builder groovy = GroovyParser.builder();
+        GradleParser.Builder gradle = GradleParser.builder();
+        if (typeFactory != null) {
+            groovy.typeFactory(typeFactory);
+            gradle.typeFactory(typeFactory);
+        }
+        // Only names that pass these checks are offered to the real parsers, which make the final decision
+        List<Parser> parsers = cheapResourceParsers();
+        parsers.add(new LazyParser(groovy, fileName(name -> name.endsWith(".groovy") || name.startsWith("Jenkinsfile")),
+                typeFactory, false));
+        parsers.add(new LazyParser(gradle, fileName(name -> name.endsWith(".gradle") || name.endsWith(".gradle.kts")),
+                typeFactory, false));
+        return parsers;
+    }
+
+    private static List<Parser> cheapResourceParsers() {
         return new ArrayList<>(asList(
                 new JsonParser(),
                 new XmlParser(),
@@ -130,24 +250,194 @@ public class OmniParser implements Parser {
                 new ProtoParser(),
                 new TomlParser(),
                 new DockerParser(),
-                HclParser.builder().build(),
-                groovy.build(),
-                gradle.build()
+                HclParser.builder().build()
         ));
     }
 
+    /**
+     * Wraps a parser that is not safe to call concurrently, so that when parsing in parallel each worker
+     * builds and uses its own instance from {@code builder}. State configured on the builder is shared by
+     * all those instances and must itself be thread-safe. All inputs of the parser are parsed together, as
+     * with any parser not known to parse each input on its own.
+     */
+    public static Parser perWorker(Parser.Builder builder) {
+        return perWorker(builder, false);
+    }
+
+    /**
+     * Like {@link #perWorker(Parser.Builder)}, but states whether the parser parses each input on its own.
+     * If so, its inputs are parsed in separate tasks, each with its own {@link Builder#parseTimeout(Duration)},
+     * and may be placed in separate {@link #shards(Path, int) shards}.
+     *
+     * @param builder The builder of the parser.
+     * @param perFile Whether the parser parses each input on its own, without regard to the others.
+     */
+    public static Parser perWorker(Parser.Builder builder, boolean perFile) {
+        return new LazyParser(builder, path -> true, null, perFile);
+    }
+
     public Stream<SourceFile> parseAll(Path rootDir) {
-        return parse(acceptedPaths(rootDir), rootDir, new InMemoryExecutionContext());
+        // Carry the sizes seen by the walk through to the parse so inputs can be scheduled by size
+        List<FileSource> fileSources = new ArrayList<>();
+        try (Session session = session(rootDir)) {
+            session.acceptedPaths(rootDir, (path, size) -> fileSources.add(new FileSource(path, size)));
+        }
+        return parse(fileSources, rootDir, new InMemoryExecutionContext());
     }
 
     @Override
     public Stream<SourceFile> parse(Iterable<Path> sourceFiles, @Nullable Path relativeTo, ExecutionContext ctx) {
-        int count = 0;
-        for (Path ignored : sourceFiles) {
-            count++;
+        List<FileSource> fileSources = new ArrayList<>();
+        for (Path sourceFile : sourceFiles) {
+            fileSources.add(new FileSource(sourceFile, -1));
+        }
+        return parse(fileSources, relativeTo, ctx);
+    }
+
+    private Stream<SourceFile> parse(List<FileSource> fileSources, @Nullable Path relativeTo, ExecutionContext ctx) {
+        checkCancelled();
+        onParse.accept(fileSources.size());
+        if (deduplicate) {
+            Deduplicator deduplicator = new Deduplicator(fileSources, this::parserFor, relativeTo, deduplicationStats);
+            return deduplicator.withDuplicates(parseFileSources(deduplicator.getUnique(), relativeTo, ctx), relativeTo);
+        }
+        return parseFileSources(fileSources, relativeTo, ctx);
+    }
+
+    private Stream<SourceFile> parseFileSources(List<FileSource> fileSources, @Nullable Path relativeTo, ExecutionContext ctx) {
+        List<Input> inputs = new ArrayList<>(fileSources.size());
+        Map<Input, FileSource> inputSources = new IdentityHashMap<>(fileSources.size());
+        for (FileSource fileSource : fileSources) {
+            Input input = new Input(fileSource.getPath(), fileSource);
+            inputs.add(input);
+            inputSources.put(input, fileSource);
+        }
+        return parseInputs(inputs, relativeTo, ctx, inputSources);
+    }
+
+    /**
+     * Parse the files of a commit straight from the object database, without checking it out, so that
+     * historical commits and branches can be parsed in place and bare repositories can be parsed at all.
+     * Exclusions and ignored directories are matched against paths relative to the root of the commit's tree,
+     * and the size threshold against blob sizes. Source paths are relative to the root of the tree.
+     * <p>
+     * The repository stays open until the returned stream is closed. With a {@link Builder#parseCache(int) parse cache},
+     * blobs that were already parsed for an earlier revision are not parsed again, and a blob that occurs under the same
+     * file name more than once in the commit is parsed once.
+     *
+     * @param repositoryDir The working tree or git directory of a repository, which may be bare.
+     * @param revision      Anything that resolves to a commit, such as a commit id, branch or tag name.
+     * @param ctx           The execution context.
+     * @return The source files of the commit.
+     */
+    public Stream<SourceFile> parseRevision(Path repositoryDir, String revision, ExecutionContext ctx) {
+        Git git;
+        try {
+            git = Git.open(repositoryDir.toFile());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            Repository repository = git.getRepository();
+            ObjectId commitId = repository.resolve(revision);
+            if (commitId == null) {
+                throw new IllegalArgumentException("Unable to resolve " + revision + " in " + repositoryDir);
+            }
+            PathExclusions pathExclusions = new PathExclusions(repositoryDir, exclusions, exclusionMatchers);
+            List<Input> inputs = new ArrayList<>();
+            List<SourceFile> cached = new ArrayList<>();
+            Map<Path, List<Object>> cacheKeys = new HashMap<>();
+            // Blobs that occur more than once in the commit are parsed for their first path only
+            Map<List<Object>, Path> pending = new HashMap<>();
+            Map<Path, List<Input>> copies = new HashMap<>();
+            try (RevWalk revWalk = new RevWalk(repository);
+                 TreeWalk walk = new TreeWalk(repository)) {
+                walk.addTree(revWalk.parseCommit(commitId).getTree());
+                ObjectReader reader = walk.getObjectReader();
+                while (walk.next()) {
+                    checkCancelled();
+                    FileMode mode = walk.getFileMode(0);
+                    String relativePath = walk.getPathString();
+                    if (mode.equals(FileMode.TREE)) {
+                        if (!DEFAULT_IGNORED_DIRECTORIES.contains(walk.getNameString()) &&
+                            !pathExclusions.isExcluded(relativePath)) {
+                            walk.enterSubtree();
+                        }
+                    } else if ((mode.equals(FileMode.REGULAR_FILE) || mode.equals(FileMode.EXECUTABLE_FILE)) &&
+                               !pathExclusions.isExcluded(relativePath)) {
+                        Path path = repositoryDir.getFileSystem().getPath(relativePath);
+                        ObjectId blobId = walk.getObjectId(0);
+                        Parser parser = parserFor(path);
+                        long size = reader.getObjectSize(blobId, Constants.OBJ_BLOB);
+                        if (parser == null || !isWithinSizeThreshold(size)) {
+                            continue;
+                        }
+                        // The path is relative to the tree rather than to the working directory, so attributes
+                        // come from the blob rather than from whatever file the path happens to name
+                        FileAttributes fileAttributes = new FileAttributes(null, null, null, true, false,
+                                mode.equals(FileMode.EXECUTABLE_FILE), size);
+                        Input input = new Input(path, fileAttributes, () -> openBlob(repository, blobId));
+                        if (parseCache != null) {
+                            List<Object> key = ParseCache.key(parser, blobId, walk.getNameString());
+                            Path first = pending.get(key);
+                            if (first != null) {
+                                copies.computeIfAbsent(first, p -> new ArrayList<>()).add(input);
+                                continue;
+                            }
+                            SourceFile sourceFile = parseCache.get(key);
+                            if (sourceFile != null) {
+                                cached.add(sourceFile.<SourceFile>withId(Tree.randomId()).withSourcePath(path));
+                                continue;
+                            }
+                            pending.put(key, path);
+                            cacheKeys.put(path, key);
+                        }
+                        inputs.add(input);
+                    }
+                }
+            }
+            int copyCount = 0;
+            for (List<Input> copiesOf : copies.values()) {
+                copyCount += copiesOf.size();
+            }
+            onParse.accept(inputs.size() + cached.size() + copyCount);
+            Stream<SourceFile> parsed = parseInputs(inputs, null, ctx);
+            if (parseCache != null) {
+                parsed = parsed.peek(sourceFile -> {
+                    List<Object> key = cacheKeys.get(sourceFile.getSourcePath());
+                    if (key != null && !(sourceFile instanceof ParseError)) {
+                        parseCache.put(key, sourceFile);
+                    }
+                });
+            }
+            if (!copies.isEmpty()) {
+                parsed = parsed.flatMap(sourceFile -> {
+                    List<Input> copiesOf = copies.get(sourceFile.getSourcePath());
+                    if (copiesOf == null) {
+                        return Stream.of(sourceFile);
+                    }
+                    return Stream.concat(Stream.of(sourceFile), copiesOf.stream().map(copy -> sourceFile
+                            .<SourceFile>withId(Tree.randomId())
+                            .withSourcePath(copy.getPath())
+                            .withFileAttributes(copy.getFileAttributes())));
+                });
+            }
+            return Stream.concat(cached.stream(), parsed).onClose(git::close);
+        } catch (IOException e) {
+            git.close();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            git.close();
+            throw e;
+        }
+    }
+
+    private static InputStream openBlob(Repository repository, ObjectId blobId) {
+        try {
+            return repository.open(blobId, Constants.OBJ_BLOB).openStream();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        onParse.accept(count);
-        return Parser.super.parse(sourceFiles, relativeTo, ctx);
     }
 
     public List<Path> acceptedPaths(Path rootDir) {
@@ -155,137 +445,661 @@ public class OmniParser implements Parser {
     }
 
     public List<Path> acceptedPaths(Path rootDir, Path searchDir) {
+        try (Session session = session(rootDir)) {
+            return session.acceptedPaths(searchDir);
+        }
+    }
+
+    /**
+     * Like {@link #acceptedPaths(Path, Path)}, but holding the paths in a {@link CompactPathList}, which
+     * takes a fraction of the memory for very large trees and creates each {@link Path} only when it is read.
+     *
+     * @param rootDir   The root directory.
+     * @param searchDir The directory to search.
+     * @return The accepted paths, in the same order as {@link #acceptedPaths(Path, Path)}.
+     */
+    public CompactPathList compactAcceptedPaths(Path rootDir, Path searchDir) {
+        try (Session session = session(rootDir)) {
+            return session.compactAcceptedPaths(searchDir);
+        }
+    }
+
+    /**
+     * Open a session over {@code rootDir} that keeps its git repository and parsed index open
+     * across calls, for callers that collect paths for many search directories under the same root.
+     * The index is only re-read when it changes on disk.
+     *
+     * @param rootDir The root directory, which is the working tree root when it is a git repository.
+     * @return A session that must be closed to release the repository.
+     */
+    public Session session(Path rootDir) {
+        return new Session(rootDir);
+    }
+
+    /**
+     * Partition the accepted paths under {@code rootDir} into {@code count} shards of roughly equal total
+     * size in bytes, so that the parse of one repository can be split across several workers. The partition
+     * is the same on every run over the same files. Files routed to the same parser are kept in one shard,
+     * since that parser may need to see them together, e.g. to attribute types across files. Only the files
+     * of parsers that parse each file on its own, such as YAML or JSON, are placed one by one.
+     *
+     * @param rootDir The root directory.
+     * @param count   The number of shards.
+     * @return The paths of each shard.
+     */
+    public List<List<Path>> shards(Path rootDir, int count) {
+        return shards(rootDir, count, shard -> true);
+    }
+
+    /**
+     * Shard {@code index} of {@link #shards(Path, int)}, without resolving the paths of the other shards.
+     *
+     * @param rootDir The root directory.
+     * @param index   The zero-based index of the shard to return.
+     * @param count   The number of shards.
+     * @return The paths of the shard.
+     */
+    public List<Path> shard(Path rootDir, int index, int count) {
+        if (index < 0 || index >= count) {
+            throw new IllegalArgumentException("Shard index " + index + " is out of range for " + count + " shards");
+        }
+        return shards(rootDir, count, shard -> shard == index).get(index);
+    }
+
+    private List<List<Path>> shards(Path rootDir, int count, IntPredicate keep) {
+        if (count < 1) {
+            throw new IllegalArgumentException("The shard count must be at least 1 but was " + count);
+        }
+        Shards shards = new Shards(rootDir);
+        try (Session session = session(rootDir)) {
+            session.acceptedPaths(rootDir, (path, size) -> {
+                String relativePath = relativize(rootDir, path);
+                Parser parser = requireNonNull(parserFor(path));
+                // A relative path never starts with a slash, so the keys of parser groups cannot collide with it
+                shards.add(isPerFile(parser) ? relativePath : "/" + parsers.indexOf(parser), relativePath, size);
+            });
+        }
+        return shards.partition(count, keep);
+    }
+
+    private List<Path> acceptedPaths(Session session, Path searchDir) {
+        List<Path> accepted = new ArrayList<>();
+        acceptedPaths(session, searchDir, (path, size) -> accepted.add(path));
+        return accepted;
+    }
+
+    private CompactPathList compactAcceptedPaths(Session session, Path searchDir) {
+        CompactPathList.Builder accepted = new CompactPathList.Builder(session.rootDir);
+        acceptedPaths(session, searchDir, (path, size) -> accepted.add(relativize(session.rootDir, path)));
+        return accepted.build();
+    }
+
+    /**
+     * @param onAccepted Receives each accepted path together with its size in bytes.
+     */
+    private void acceptedPaths(Session session, Path searchDir, ObjLongConsumer<Path> onAccepted) {
         Path normalizedSearchDir = searchDir.normalize();
         if (!Files.exists(normalizedSearchDir)) {
-            return emptyList();
+            return;
         }
 
-        List<Path> accepted = new ArrayList<>();
-        Repository repository = getRepository(rootDir);
+        Repository repository = session.getRepository();
         if (repository != null) {
-            try (TreeWalk walk = new TreeWalk(repository)) {
-                FileTreeIterator fileTreeIterator = new FileTreeIterator(repository);
-                walk.addTree(fileTreeIterator);
-                walk.addTree(new DirCacheIterator(repository.readDirCache()));
-                // Link the FileTreeIterator to the DirCacheIterator so that
-                // FileTreeIterator.createSubtreeIterator() can check the index
-                // before skipping ignored directories containing tracked files.
-                fileTreeIterator.setDirCacheIterator(walk, 1);
-                // Confine the tree walk to searchDir; skip the filter when searchDir is rootDir
-                if (!rootDir.equals(normalizedSearchDir)) {
-                    String relativePath = separatorsToUnix(rootDir.relativize(normalizedSearchDir).toString());
-                    walk.setFilter(PathFilter.create(relativePath));
+            // Confine the tree walk to searchDir; skip the filter when searchDir is rootDir
+            String relativePath = relativize(session.rootDir, normalizedSearchDir);
+            walkRepository(session, repository, relativePath.isEmpty() ? null : PathFilter.create(relativePath),
+                    (path, relative, size) -> onAccepted.accept(path, size));
+        } else {
+            walkFileTree(session, normalizedSearchDir, onAccepted);
+        }
+    }
+
+    /**
+     * Like {@link #acceptedPaths(Path, Path)} for several search directories at once. In a git repository
+     * this is a single tree walk confined to all search directories together, rather than one walk per
+     * directory. A path is returned for every search directory that contains it, so nested search
+     * directories each see the paths beneath them.
+     *
+     * @param rootDir    The root directory.
+     * @param searchDirs The directories to search.
+     * @return The accepted paths of each search directory, keyed and ordered by the search directories as given.
+     */
+    public Map<Path, List<Path>> acceptedPaths(Path rootDir, Collection<Path> searchDirs) {
+        try (Session session = session(rootDir)) {
+            return session.acceptedPaths(searchDirs);
+        }
+    }
+
+    private Map<Path, List<Path>> acceptedPaths(Session session, Collection<Path> searchDirs) {
+        Map<Path, List<Path>> accepted = new LinkedHashMap<>();
+        Repository repository = session.getRepository();
+        if (repository == null) {
+            for (Path searchDir : searchDirs) {
+                accepted.computeIfAbsent(searchDir, dir -> acceptedPaths(session, dir));
+            }
+            return accepted;
+        }
+
+        // Buckets by '/'-separated search directory relative to rootDir, where "" is rootDir itself.
+        // Several search directories may normalize to the same relative path.
+        Map<String, List<List<Path>>> buckets = new HashMap<>();
+        for (Path searchDir : searchDirs) {
+            if (accepted.containsKey(searchDir)) {
+                continue;
+            }
+            List<Path> bucket = new ArrayList<>();
+            accepted.put(searchDir, bucket);
+            Path normalizedSearchDir = searchDir.normalize();
+            if (Files.exists(normalizedSearchDir)) {
+                buckets.computeIfAbsent(relativize(session.rootDir, normalizedSearchDir), dir -> new ArrayList<>(1))
+                        .add(bucket);
+            }
+        }
+        if (buckets.isEmpty()) {
+            return accepted;
+        }
+
+        walkRepository(session, repository,
+                buckets.containsKey("") ? null : PathFilterGroup.createFromStrings(buckets.keySet()),
+                (path, relativePath, size) -> {
+                    // Add the path to the bucket of every search directory that is an ancestor of it
+                    String dir = relativePath;
+                    while (true) {
+                        List<List<Path>> dirBuckets = buckets.get(dir);
+                        if (dirBuckets != null) {
+                            for (List<Path> bucket : dirBuckets) {
+                                bucket.add(path);
+                            }
+                        }
+                        if (dir.isEmpty()) {
+                            break;
+                        }
+                        int slash = dir.lastIndexOf('/');
+                        dir = slash < 0 ? "" : dir.substring(0, slash);
+                    }
+                });
+        return accepted;
+    }
+
+    private void walkRepository(Session session, Repository repository, @Nullable TreeFilter pathFilter,
+                                AcceptedPathConsumer onAccepted) {
+        try (TreeWalk walk = new TreeWalk(repository)) {
+            DirCache dirCache = session.getDirCache();
+            WalkSnapshot previous = null;
+            WalkSnapshot recording = null;
+            if (snapshotDirectories && pathFilter == null) {
+                List<?> excludes = excludes(repository);
+                previous = session.takeSnapshot();
+                if (previous != null && !previous.isValidFor(dirCache, excludes)) {
+                    previous = null;
                 }
-                while (walk.next()) {
-                    FileTreeIterator workingTreeIterator = walk.getTree(0, FileTreeIterator.class);
-                    if (workingTreeIterator == null) {
+                recording = new WalkSnapshot(session.rootDir, dirCache, excludes);
+            }
+
+            FileTreeIterator fileTreeIterator = new FileTreeIterator(repository);
+            walk.addTree(fileTreeIterator);
+            walk.addTree(new DirCacheIterator(dirCache));
+            // Link the FileTreeIterator to the DirCacheIterator so that
+            // FileTreeIterator.createSubtreeIterator() can check the index
+            // before skipping ignored directories containing tracked files.
+            fileTreeIterator.setDirCacheIterator(walk, 1);
+            // Excluded, ignored and oversized entries are rejected by the filter, so
+            // excluded subtrees are never entered
+            TreeFilter filter = new AcceptedPathTreeFilter(session.pathExclusions, DEFAULT_IGNORED_DIRECTORIES,
+                    this::isWithinSizeThreshold);
+            walk.setFilter(pathFilter == null ? filter : AndTreeFilter.create(pathFilter, filter));
+            while (walk.next()) {
+                checkCancelled();
+                String relativePath = walk.getPathString();
+                if (walk.getFileMode(0).equals(FileMode.TREE)) {
+                    if (previous != null && previous.isUnchanged(relativePath)) {
+                        // Nothing was added, removed or renamed beneath this directory since the last walk
+                        // Only accepted files were recorded, with sizes within the threshold when they were seen
+                        previous.replay(relativePath, recording, (replayedPath, recordedSize) ->
+                                onAccepted.accept(session.rootDir.resolve(replayedPath), replayedPath, recordedSize));
                         continue;
                     }
-                    DirCacheIterator dirCacheIterator = walk.getTree(1, DirCacheIterator.class);
-                    String pathString = workingTreeIterator.getEntryPathString();
-                    Path path = rootDir.resolve(pathString);
-                    FileMode mode = workingTreeIterator.getEntryFileMode();
-                    // Only treat as ignored if it matches gitignore AND is not tracked in the index
-                    boolean isIgnored = workingTreeIterator.isEntryIgnored() && dirCacheIterator == null;
-                    if (mode.equals(FileMode.TREE) &&
-                            !isExcluded(path, rootDir) &&
-                            !DEFAULT_IGNORED_DIRECTORIES.contains(path.getFileName().toString()) &&
-                            !isIgnored) {
-                        walk.enterSubtree();
-                    } else if ((mode.equals(FileMode.EXECUTABLE_FILE) || mode.equals(FileMode.REGULAR_FILE)) &&
-                            !isIgnored &&
-                            !isExcluded(path, rootDir) &&
-                            // Use getEntryLength() (stat-based) instead of getEntryContentLength()
-                            // which reads the entire file through jgit's filter pipeline.
-                            isWithinSizeThreshold(workingTreeIterator.getEntryLength())) {
-                        for (Parser parser : parsers) {
-                            if (parser.accept(path)) {
-                                accepted.add(path);
-                                break;
-                            }
+                    if (recording != null) {
+                        recording.directory(relativePath);
+                    }
+                    walk.enterSubtree();
+                    continue;
+                }
+                Path path = session.rootDir.resolve(relativePath);
+                for (Parser parser : parsers) {
+                    if (parser.accept(path)) {
+                        long size = requireNonNull(walk.getTree(0, FileTreeIterator.class)).getEntryLength();
+                        if (recording != null) {
+                            recording.file(relativePath, size);
                         }
+                        onAccepted.accept(path, relativePath, size);
+                        break;
                     }
                 }
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
             }
-        } else {
-            try {
-                Files.walkFileTree(normalizedSearchDir, new SimpleFileVisitor<Path>() {
-                    @Override
-                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                        return isExcluded(dir, rootDir) ||
-                                isIgnoredDirectory(dir, normalizedSearchDir) ?
-                                FileVisitResult.SKIP_SUBTREE :
-                                FileVisitResult.CONTINUE;
+            if (recording != null) {
+                session.putSnapshot(recording);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The modification times of {@code .git/info/exclude} and of the file named by {@code core.excludesFile},
+     * along with that file's path, which identify the version of the ignore rules kept outside {@code .gitignore} files.
+     */
+    private static List<?> excludes(Repository repository) {
+        Path excludesFile = null;
+        String configured = repository.getConfig().get(CoreConfig.KEY).getExcludesFile();
+        if (configured != null) {
+            FS fs = repository.getFS();
+            excludesFile = (configured.startsWith("~/") ?
+                    fs.resolve(fs.userHome(), configured.substring(2)) :
+                    fs.resolve(null, configured)).toPath();
+        }
+        return asList(
+                WalkSnapshot.modified(repository.getDirectory().toPath().resolve("info/exclude")),
+                excludesFile,
+                excludesFile == null ? null : WalkSnapshot.modified(excludesFile));
+    }
+
+    private void walkFileTree(Session session, Path searchDir, ObjLongConsumer<Path> onAccepted) {
+        PathExclusions pathExclusions = session.pathExclusions;
+        GitIgnoreRules gitIgnoreRules = respectGitIgnore ? new GitIgnoreRules(session.rootDir, searchDir) : null;
+        Set<Object> seenFileKeys = skipLinkedCopies ? new HashSet<>() : null;
+        try {
+            Files.walkFileTree(searchDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    checkCancelled();
+                    if (pathExclusions.isExcluded(dir) ||
+                        isIgnoredDirectory(dir, searchDir) ||
+                        (gitIgnoreRules != null && gitIgnoreRules.isIgnored(dir, true))) {
+                        return FileVisitResult.SKIP_SUBTREE;
                     }
+                    if (isLinkedCopy(attrs)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    if (gitIgnoreRules != null) {
+                        gitIgnoreRules.enter(dir);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
 
-                    @Override
-                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                        if (!attrs.isOther() && !attrs.isSymbolicLink() &&
-                                !isExcluded(file, rootDir) &&
-                                isWithinSizeThreshold(attrs.size())
-                        ) {
-                            for (Parser parser : parsers) {
-                                if (parser.accept(file)) {
-                                    accepted.add(file);
-                                    break;
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, @Nullable IOException exc) throws IOException {
+                    if (gitIgnoreRules != null) {
+                        gitIgnoreRules.exit();
+                    }
+                    return super.postVisitDirectory(dir, exc);
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    checkCancelled();
+                    if (!attrs.isOther() && !attrs.isSymbolicLink() &&
+                            isWithinSizeThreshold(attrs.size()) &&
+                            !pathExclusions.isExcluded(file) &&
+                            (gitIgnoreRules == null || !gitIgnoreRules.isIgnored(file, false))
+                    ) {
+                        for (Parser parser : parsers) {
+                            if (parser.accept(file)) {
+                                // Checked only once accepted, so that a link under a name no parser accepts
+                                // does not hide an accepted one
+                                if (!isLinkedCopy(attrs)) {
+                                    onAccepted.accept(file, attrs.size());
                                 }
+                                break;
                             }
                         }
-                        return FileVisitResult.CONTINUE;
                     }
-                });
-            } catch (IOException e) {
-                throw new UncheckedIOException(e);
-            }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                /**
+                 * @return true if the same file or directory, by its {@link BasicFileAttributes#fileKey() file key},
+                 * was already seen by this walk through a hard link or bind mount.
+                 */
+                private boolean isLinkedCopy(BasicFileAttributes attrs) {
+                    Object fileKey = seenFileKeys == null ? null : attrs.fileKey();
+                    if (fileKey == null || seenFileKeys.add(fileKey)) {
+                        return false;
+                    }
+                    skippedLinkedCopies.incrementAndGet();
+                    return true;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        return accepted;
+    private static String relativize(Path rootDir, Path path) {
+        return separatorsToUnix(rootDir.relativize(path).toString());
+    }
+
+    @FunctionalInterface
+    private interface AcceptedPathConsumer {
+        /**
+         * @param path         The accepted path.
+         * @param relativePath The '/'-separated path relative to the root directory.
+         * @param size         The size of the file in bytes.
+         */
+        void accept(Path path, String relativePath, long size);
     }
 
-    private @Nullable Repository getRepository(Path rootDir) {
-        try (Git git = Git.open(rootDir.toFile())) {
-            return git.getRepository();
+    private static @Nullable Git openGit(Path rootDir) {
+        try {
+            return Git.open(rootDir.toFile());
         } catch (IOException e) {
             // no git
             return null;
         }
     }
 
+    /**
+     * Caches the {@link Repository} and parsed {@link DirCache} of a root directory across
+     * {@link #acceptedPaths(Path)} calls. Closing the session closes the repository.
+     */
+    public class Session implements AutoCloseable {
+        private final Path rootDir;
+        private final PathExclusions pathExclusions;
+
+        @Nullable
+        private final Git git;
+
+        @Nullable
+        private DirCache dirCache;
+
+        @Nullable
+        private WalkSnapshot snapshot;
+
+        private Session(Path rootDir) {
+            this.rootDir = rootDir;
+            this.pathExclusions = new PathExclusions(rootDir, exclusions, exclusionMatchers);
+            this.git = openGit(rootDir);
+            if (warmUpParsers) {
+                // Build expensive parsers while the walk runs rather than when the first input is parsed
+                for (Parser parser : parsers) {
+                    if (parser instanceof LazyParser) {
+                        ((LazyParser) parser).warmUp();
+                    }
+                }
+            }
+        }
+
+        public List<Path> acceptedPaths() {
+            return acceptedPaths(rootDir);
+        }
+
+        public List<Path> acceptedPaths(Path searchDir) {
+            return OmniParser.this.acceptedPaths(this, searchDir);
+        }
+
+        public Map<Path, List<Path>> acceptedPaths(Collection<Path> searchDirs) {
+            return OmniParser.this.acceptedPaths(this, searchDirs);
+        }
+
+        public CompactPathList compactAcceptedPaths(Path searchDir) {
+            return OmniParser.this.compactAcceptedPaths(this, searchDir);
+        }
+
+        void acceptedPaths(Path searchDir, ObjLongConsumer<Path> onAccepted) {
+            OmniParser.this.acceptedPaths(this, searchDir, onAccepted);
+        }
+
+        /**
+         * @return true if the walk would not enter {@code dir}, because it is excluded or an ignored directory.
+         */
+        boolean isSkippedDirectory(Path dir) {
+            return pathExclusions.isExcluded(dir) || isIgnoredDirectory(dir, rootDir);
+        }
+
+        @Nullable
+        Repository getRepository() {
+            return git == null ? null : git.getRepository();
+        }
+
+        synchronized DirCache getDirCache() throws IOException {
+            if (dirCache == null || dirCache.isOutdated()) {
+                dirCache = requireNonNull(getRepository()).readDirCache();
+            }
+            return dirCache;
+        }
+
+        /**
+         * @return The snapshot recorded by the last full walk, which is handed to one walk only.
+         */
+        synchronized @Nullable WalkSnapshot takeSnapshot() {
+            WalkSnapshot s = snapshot;
+            snapshot = null;
+            return s;
+        }
+
+        synchronized void putSnapshot(WalkSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public void close() {
+            if (git != null) {
+                git.close();
+            }
+        }
+    }
+
     @Override
     public Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo,
                                           ExecutionContext ctx) {
+        return parseInputs(sources, relativeTo, ctx, emptyMap());
+    }
+
+    /**
+     * @param inputSources The file sources of those inputs that OmniParser created from files.
+     */
+    private Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo,
+                                           ExecutionContext ctx, Map<Input, FileSource> inputSources) {
+        Stream<SourceFile> parsed = parseUncompacted(sources, relativeTo, ctx, inputSources);
+        return compactor == null ? parsed : parsed.map(compactor::compact);
+    }
+
+    private Stream<SourceFile> parseUncompacted(Iterable<Input> sources, @Nullable Path relativeTo,
+                                                ExecutionContext ctx, Map<Input, FileSource> inputSources) {
+        if (parallel) {
+            // Inputs of parsers that parse each input independently are each their own task. The inputs of
+            // any other parser are parsed together in one task, e.g. so that a pom can resolve its parent
+            List<ParseScheduler.Task> tasks = new ArrayList<>();
+            Map<Parser, List<Input>> grouped = new LinkedHashMap<>();
+            for (Input input : sources) {
+                Parser parser = parserFor(input.getPath());
+                if (parser == null) {
+                    continue;
+                }
+                if (isPerFile(parser)) {
+                    tasks.add(task(parser, singletonList(input), inputSources));
+                } else {
+                    grouped.computeIfAbsent(parser, p -> new ArrayList<>()).add(input);
+                }
+            }
+            for (Map.Entry<Parser, List<Input>> group : grouped.entrySet()) {
+                tasks.add(task(group.getKey(), group.getValue(), inputSources));
+            }
+            InputPrefetcher prefetcher = inputSources.isEmpty() ? null : newPrefetcher();
+            return new ParseScheduler(parallelism, preserveOrder, parseTimeout, prefetcher, parserPool, cancellationToken,
+                    concurrencyLimit).schedule(tasks, relativeTo, ctx);
+        }
+
         // Group inputs by parser so that source files which need to be parsed together are.
         // e.g.: Two java classes which reference each other must be passed into JavaParser together
         Map<Parser, List<Input>> parserToInputs = StreamSupport.stream(sources.spliterator(), false)
                 .collect(groupingBy(input -> {
-                    Path path = input.getPath();
-                    for (Parser parser : parsers) {
-                        if (parser.accept(path)) {
-                            return parser;
-                        }
-                    }
-                    return NOOP_PARSER;
+                    Parser parser = parserFor(input.getPath());
+                    return parser == null ? NOOP_PARSER : parser;
                 }));
 
         Stream<SourceFile> result = Stream.empty();
         for (Map.Entry<Parser, List<Input>> entry : parserToInputs.entrySet()) {
             Parser parser = entry.getKey();
             List<Input> inputs = entry.getValue();
-            result = Stream.concat(result, parser.parseInputs(inputs, relativeTo, ctx));
+            result = Stream.concat(result, parser.parseInputs(cancellable(inputs), relativeTo, ctx));
+        }
+
+        InputPrefetcher prefetcher = inputSources.isEmpty() ? null : newPrefetcher();
+        if (prefetcher != null) {
+            // Read ahead in the order the groups above will consume their inputs
+            List<FileSource> inParseOrder = new ArrayList<>(inputSources.size());
+            for (Map.Entry<Parser, List<Input>> entry : parserToInputs.entrySet()) {
+                if (entry.getKey() == NOOP_PARSER) {
+                    // never read by any parser
+                    continue;
+                }
+                for (Input input : entry.getValue()) {
+                    FileSource fileSource = inputSources.get(input);
+                    if (fileSource != null) {
+                        inParseOrder.add(fileSource);
+                    }
+                }
+            }
+            prefetcher.start(inParseOrder);
+            if (cancellationToken != null) {
+                prefetcher.closeOn(cancellationToken);
+            }
+            result = result.onClose(prefetcher::close);
         }
         return result;
     }
 
-    @Override
-    public boolean accept(Path path) {
+    private void checkCancelled() {
+        if (cancellationToken != null) {
+            cancellationToken.throwIfCancelled();
+        }
+    }
+
+    /**
+     * @return {@code inputs}, checking for cancellation before a parser takes each next input.
+     */
+    private Iterable<Input> cancellable(List<Input> inputs) {
+        if (cancellationToken == null) {
+            return inputs;
+        }
+        return () -> new Iterator<Input>() {
+            private final Iterator<Input> delegate = inputs.iterator();
+
+            @Override
+            public boolean hasNext() {
+                checkCancelled();
+                return delegate.hasNext();
+            }
+
+            @Override
+            public Input next() {
+                checkCancelled();
+                return delegate.next();
+            }
+        };
+    }
+
+    private @Nullable InputPrefetcher newPrefetcher() {
+        InputPrefetcher prefetcher = null;
+        if (prefetchInputs > 0) {
+            prefetcher = new InputPrefetcher(InputPrefetcher.ioExecutor(virtualThreadReads), prefetchInputs, prefetchBytes);
+        } else if (virtualThreadReads && parallel) {
+            prefetcher = new InputPrefetcher(InputPrefetcher.ioExecutor(true), parallelism, Long.MAX_VALUE);
+        }
+        if (prefetcher != null) {
+            lastPrefetcher = prefetcher;
+        }
+        return prefetcher;
+    }
+
+    /**
+     * @return The most bytes that the most recent parse read ahead at any one time, see {@link Builder#prefetch(int, long)}.
+     */
+    long getPeakPrefetchedBytes() {
+        InputPrefetcher prefetcher = lastPrefetcher;
+        return prefetcher == null ? 0 : prefetcher.getPeakBytes();
+    }
+
+    /**
+     * @return How much repeated values in parsed source files have been compacted, see
+     * {@link Builder#compact(int)}.
+     */
+    public CompactionStats getCompactionStats() {
+        return compactor == null ? new CompactionStats() : compactor.getStats();
+    }
+
+    /**
+     * @return How often {@link #parseRevision(Path, String, ExecutionContext)} found a blob already parsed,
+     * see {@link Builder#parseCache(int)}.
+     */
+    public ParseCacheStats getParseCacheStats() {
+        return parseCache == null ? new ParseCacheStats() : parseCache.getStats();
+    }
+
+    /**
+     * @return How many inputs a parallel parse currently parses at once, which is lower than the
+     * {@link Builder#parallelism(int) parallelism} while {@link Builder#adaptiveParallelism(boolean) adaptive parallelism}
+     * is backing off under heap pressure, and 1 when parsing serially.
+     */
+    public int getConcurrency() {
+        if (!parallel) {
+            return 1;
+        }
+        return concurrencyLimit == null ? parallelism : concurrencyLimit.getLimit();
+    }
+
+    /**
+     * @return How many files and directories walks outside of git repositories have skipped because they were
+     * a hard link or bind mount of one already seen, see {@link Builder#skipLinkedCopies(boolean)}. This is a total
+     * over every walk by this parser, which is not reset between walks.
+     */
+    public long getSkippedLinkedCopies() {
+        return skippedLinkedCopies.get();
+    }
+
+    private @Nullable Parser parserFor(Path path) {
         for (Parser parser : parsers) {
             if (parser.accept(path)) {
-                return true;
+                return parser;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true if {@code parser} parses each input on its own, so that its inputs may be parsed in
+     * separate tasks. Parsers built per worker by a {@link LazyParser} only do so when that was stated
+     * on wrapping them.
+     */
+    private static boolean isPerFile(Parser parser) {
+        if (parser instanceof LazyParser) {
+            return ((LazyParser) parser).isPerFile();
+        }
+        return PER_FILE_PARSERS.contains(parser.getClass());
+    }
+
+    private static ParseScheduler.Task task(Parser parser, List<Input> inputs, Map<Input, FileSource> inputSources) {
+        List<FileSource> fileSources = new ArrayList<>(inputs.size());
+        long size = 0;
+        for (Input input : inputs) {
+            FileSource fileSource = inputSources.get(input);
+            if (fileSource != null) {
+                fileSources.add(fileSource);
             }
+            size += fileSource == null || fileSource.getSize() < 0 ? sizeOf(input) : fileSource.getSize();
         }
-        return false;
+        return new ParseScheduler.Task(parser, inputs, fileSources, size);
+    }
+
+    private static long sizeOf(Input input) {
+        FileAttributes fileAttributes = input.getFileAttributes();
+        return fileAttributes == null ? 0 : fileAttributes.getSize();
+    }
+
+    @Override
+    public boolean accept(Path path) {
+        return parserFor(path) != null;
     }
 
     @Override
@@ -298,30 +1112,17 @@ public class OmniParser implements Parser {
     }
 
     boolean isExcluded(Path path, Path rootDir) {
-        Path relativePath;
-        if (path.isAbsolute()) {
-            relativePath = rootDir.relativize(path);
-        } else {
-            relativePath = path;
-        }
-        if (exclusions.contains(path) || exclusions.contains(relativePath)) {
-            return true;
-        }
-        for (PathMatcher excluded : exclusionMatchers) {
-            if (excluded.matches(relativePath)) {
-                return true;
-            }
-        }
-        return false;
+        return new PathExclusions(rootDir, exclusions, exclusionMatchers).isExcluded(path);
     }
 
-    private boolean isIgnoredDirectory(Path path, Path rootDir) {
-        for (Path pathSegment : rootDir.relativize(path)) {
-            if (DEFAULT_IGNORED_DIRECTORIES.contains(pathSegment.toString())) {
-                return true;
-            }
-        }
-        return false;
+    /**
+     * Ancestors of {@code path} below {@code searchDir} have already been visited and would have
+     * been skipped if ignored, so only the directory's own name needs to be checked.
+     */
+    private boolean isIgnoredDirectory(Path path, Path searchDir) {
+        Path fileName = path.getFileName();
+        return !path.equals(searchDir) && fileName != null &&
+               DEFAULT_IGNORED_DIRECTORIES.contains(fileName.toString());
     }
 
     public static Builder builder(Parser... parsers) {
@@ -342,6 +1143,27 @@ public class OmniParser implements Parser {
         private Collection<PathMatcher> exclusionMatchers = emptyList();
         private int sizeThresholdMb = 10;
         private boolean parallel;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private boolean preserveOrder;
+
+        @Nullable
+        private Duration parseTimeout;
+
+        private boolean virtualThreadReads;
+        private int prefetchInputs;
+        private long prefetchBytes = Long.MAX_VALUE;
+        private boolean warmUpParsers;
+        private boolean deduplicate;
+        private int compactionTableSize;
+        private int parseCacheSize;
+        private boolean snapshotDirectories;
+        private boolean respectGitIgnore;
+        private boolean skipLinkedCopies;
+
+        @Nullable
+        private CancellationToken cancellationToken;
+
+        private boolean adaptiveParallelism;
         private Consumer<Integer> onParse = inputCount -> {
         };
         private final List<Parser> parsers;
@@ -378,8 +1200,14 @@ public class OmniParser implements Parser {
         }
 
         /**
-         * Resource parsers are safe to execute in parallel. This is not true of all parsers, for example
-         * the MavenParser.
+         * Parse on a pool of {@link #parallelism(int)} worker threads. Inputs of the resource parsers, which parse
+         * each input on its own, are each parsed as a separate task, largest first. The inputs of any other parser,
+         * such as a JavaParser that attributes types across files or a MavenParser that resolves parent poms,
+         * are still parsed together as one task, so they keep their cross-file context but are not spread
+         * over several workers.
+         * <p>
+         * Unlike a serial parse, a parallel parse is not lazy: every task is started as soon as the stream is
+         * created, before the consumer pulls anything, and its source files are held until they are consumed.
          *
          * @param parallel whether the parser stream should be parallelized.
          * @return this builder.
@@ -389,9 +1217,224 @@ public class OmniParser implements Parser {
             return this;
         }
 
+        /**
+         * When parsing in parallel, inputs are started largest first across this many worker threads.
+         *
+         * @param parallelism the number of worker threads. Defaults to the number of available processors.
+         * @return this builder.
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        /**
+         * When parsing in parallel, source files are emitted as soon as they are parsed unless this is set,
+         * in which case they are emitted in the order of the inputs.
+         *
+         * @param preserveOrder whether parallel parse results should follow the input order.
+         * @return this builder.
+         */
+        public Builder preserveOrder(boolean preserveOrder) {
+            this.preserveOrder = preserveOrder;
+            return this;
+        }
+
+        /**
+         * When parsing in parallel, an input whose parse runs longer than this is abandoned and produces a
+         * {@link org.openrewrite.tree.ParseError} carrying a {@link ParseTimeoutException}, while the remaining
+         * inputs keep being parsed on other workers. A serial parse has no other worker to move on with,
+         * so {@link #build()} rejects a timeout unless {@link #parallel(boolean)} is set.
+         * <p>
+         * Inputs of parsers that parse each input on its own are timed one by one. The inputs of any other
+         * parser are parsed in one go, so they get this budget once per input, and are abandoned together
+         * when their parse exceeds it.
+         *
+         * @param parseTimeout the time budget for each input, or null for no limit.
+         * @return this builder.
+         */
+        public Builder parseTimeout(@Nullable Duration parseTimeout) {
+            this.parseTimeout = parseTimeout;
+            return this;
+        }
+
+        /**
+         * When parsing in parallel, read the content of file inputs ahead of the parse workers on virtual
+         * threads, so that I/O latency, for example on network file systems, is hidden behind parsing rather
+         * than stalling the workers. Requires Java 21 or later, and falls back to platform threads otherwise.
+         * Also applies to a serial parse that {@link #prefetch(int, long) prefetches}, and {@link #build()}
+         * rejects it for a serial parse that does not, as there would be nothing to read on them.
+         *
+         * @param virtualThreadReads whether file inputs should be read on virtual threads.
+         * @return this builder.
+         */
+        public Builder virtualThreadReads(boolean virtualThreadReads) {
+            this.virtualThreadReads = virtualThreadReads;
+            return this;
+        }
+
+        /**
+         * Read the content of the next file inputs on a separate I/O stage while the current ones are parsed,
+         * whether or not parsing is parallel. Reading stays at most this many inputs and bytes ahead of the
+         * parse, so memory use is bounded even when the parse falls behind.
+         *
+         * @param maxInputs the number of inputs to read ahead, or 0 to disable prefetching.
+         * @param maxBytes  the number of bytes to read ahead. A single larger input is still read ahead on its own.
+         * @return this builder.
+         */
+        public Builder prefetch(int maxInputs, long maxBytes) {
+            this.prefetchInputs = Math.max(0, maxInputs);
+            this.prefetchBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Parsers from {@link #lazyResourceParsers()} that are expensive to set up are only built once a path
+         * they may accept is seen. With this set, they are instead built in the background as soon as a walk
+         * starts, so that the cost overlaps with finding the files to parse.
+         *
+         * @param warmUpParsers whether to build deferred parsers in the background when a walk starts.
+         * @return this builder.
+         */
+        public Builder warmUpParsers(boolean warmUpParsers) {
+            this.warmUpParsers = warmUpParsers;
+            return this;
+        }
+
+        /**
+         * Parse files with the same name and identical content only once, and emit copies of the resulting source
+         * file with their own id, source path and file attributes for the others. Monorepos often contain many such
+         * copies, for example of license files or generated configuration. See {@code OmniParser.getDeduplicationStats()}
+         * for how many files were copied rather than parsed.
+         * <p>
+         * Only the source file itself is copied. The trees beneath it, ids included, are shared by all copies, which
+         * is what keeps them cheap. Trees are immutable, so a recipe that changes one copy leaves the others as they are,
+         * but a recipe that tracks trees by id across source files sees the shared trees in each copy.
+         *
+         * @param deduplicate whether identical files should be parsed once.
+         * @return this builder.
+         */
+        public Builder deduplicate(boolean deduplicate) {
+            this.deduplicate = deduplicate;
+            return this;
+        }
+
+        /**
+         * Replace repeated values in parsed YAML, XML and JSON source files, such as whitespace, keys and tag names,
+         * with a single shared instance, so that more source files fit in the same heap. The shared instances are held
+         * in a table for as long as the parser is, which stops growing once it reaches {@code tableSize} values.
+         *
+         * @param tableSize the maximum number of distinct values to share, or 0 to disable compaction.
+         * @return this builder.
+         */
+        public Builder compact(int tableSize) {
+            this.compactionTableSize = Math.max(0, tableSize);
+            return this;
+        }
+
+        /**
+         * Keep the source files that {@link #parseRevision(Path, String, ExecutionContext)} parses from git blobs,
+         * so that parsing several revisions of the same repository, such as its release branches, parses each
+         * distinct blob only once. The least recently used source files are evicted beyond {@code maxEntries}.
+         *
+         * @param maxEntries the maximum number of source files to keep, or 0 to disable the cache.
+         * @return this builder.
+         */
+        public Builder parseCache(int maxEntries) {
+            this.parseCacheSize = Math.max(0, maxEntries);
+            return this;
+        }
+
+        /**
+         * In a git repository, remember the modification time of every directory a full walk of a {@link Session}
+         * enters, so that the session's next full walk can take the accepted paths beneath directories that have not
+         * changed since instead of listing every file in them. A change to any applicable {@code .gitignore},
+         * {@code .git/info/exclude} or {@code core.excludesFile} makes the walk list the affected directories again.
+         * Files taken from the earlier walk keep the size it recorded, as stating each of them would cost about as much
+         * as listing them. Rewriting a file in place does not change its directory, so a file that has since grown
+         * past the {@link #sizeThresholdMb(int) size threshold} is only dropped once something beneath its directory
+         * is added, removed or renamed.
+         *
+         * @param snapshotDirectories whether repeated walks of a session should skip unchanged directories.
+         * @return this builder.
+         */
+        public Builder snapshotDirectories(boolean snapshotDirectories) {
+            this.snapshotDirectories = snapshotDirectories;
+            return this;
+        }
+
+        /**
+         * When the root directory is not a git repository, for example an extracted source archive, apply the
+         * {@code .gitignore} files found in it anyway, so that ignored directories are never entered. In a git
+         * repository they always apply. Off by default, so that every file outside a git repository is walked
+         * unless it is excluded, as it always was.
+         *
+         * @param respectGitIgnore whether {@code .gitignore} files apply outside of git repositories. Defaults to false.
+         * @return this builder.
+         */
+        public Builder respectGitIgnore(boolean respectGitIgnore) {
+            this.respectGitIgnore = respectGitIgnore;
+            return this;
+        }
+
+        /**
+         * When the root directory is not a git repository, accept each file and enter each directory only once,
+         * however many hard links or bind mounts lead to it, as identified by the file system's
+         * {@link BasicFileAttributes#fileKey() file key}. Which of the copies is kept depends on the order of the
+         * walk. File systems that do not provide file keys are walked as usual.
+         *
+         * @param skipLinkedCopies whether to skip hard linked and bind mounted copies. Defaults to false.
+         * @return this builder.
+         */
+        public Builder skipLinkedCopies(boolean skipLinkedCopies) {
+            this.skipLinkedCopies = skipLinkedCopies;
+            return this;
+        }
+
+        /**
+         * Stop walks and parses in progress when {@code cancellationToken} is cancelled. The walk or the stream of
+         * parsed source files then throws a {@link java.util.concurrent.CancellationException} at the next directory,
+         * file or input, releasing the repository it had open, and parse worker threads are interrupted.
+         *
+         * @param cancellationToken The token to observe, or null to never cancel.
+         * @return this builder.
+         */
+        public Builder cancellationToken(@Nullable CancellationToken cancellationToken) {
+            this.cancellationToken = cancellationToken;
+            return this;
+        }
+
+        /**
+         * Lower the number of inputs parsed at once when garbage collections leave the heap more than 80% full,
+         * halving it on every such collection, and raise it again one at a time once they no longer do, so that
+         * a few huge inputs parsed together do not thrash the collector or exhaust the heap. Only applies to
+         * {@link #parallel(boolean) parallel} parsing. See {@code OmniParser.getConcurrency()}.
+         *
+         * @param adaptiveParallelism whether to back off under heap pressure. Defaults to false.
+         * @return this builder.
+         */
+        public Builder adaptiveParallelism(boolean adaptiveParallelism) {
+            this.adaptiveParallelism = adaptiveParallelism;
+            return this;
+        }
+
         @Override
         public OmniParser build() {
-            return new OmniParser(exclusions, exclusionMatchers, sizeThresholdMb, parallel, parsers, onParse);
+            if (parseTimeout != null && !parallel) {
+                throw new IllegalStateException("A parse timeout only applies to parallel parsing, set parallel(true)");
+            }
+            if (virtualThreadReads && !parallel && prefetchInputs == 0) {
+                throw new IllegalStateException("Virtual thread reads only apply to parallel parsing or prefetching, " +
+                                                "set parallel(true) or prefetch(int, long)");
+            }
+            return new OmniParser(exclusions, exclusionMatchers, sizeThresholdMb, parallel, parallelism, preserveOrder,
+                    parseTimeout, virtualThreadReads, prefetchInputs, prefetchBytes, warmUpParsers, deduplicate,
+                    snapshotDirectories, respectGitIgnore, skipLinkedCopies,
+                    compactionTableSize > 0 ? new SourceFileCompactor(compactionTableSize) : null,
+                    parseCacheSize > 0 ? new ParseCache(parseCacheSize) : null,
+                    cancellationToken,
+                    parallel && adaptiveParallelism ? new ConcurrencyLimit(parallelism, HeapPressure.get()) : null,
+                    parsers, onParse);
         }
 
         @Override
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.FileAttributes;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.net.*;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps an {@link OmniParser} resident in a long-lived process, so that clients do not pay JVM startup,
+ * parser class loading and JIT warm-up for every parse. The parser's lazily built parsers, caches and
+ * the {@link OmniParser.Session} of every root directory it has parsed, with its open repository, are
+ * kept between requests.
+ * <p>
+ * Clients connect over a Unix domain socket, or on runtimes before Java 16 over a loopback TCP socket,
+ * and send one line per request:
+ * <pre>
+ * [&lt;token&gt; ]&lt;progress port&gt; &lt;root directory&gt;
+ * </pre>
+ * The Unix domain socket is only accessible to its owner. Any local user can connect to a TCP port, so
+ * over TCP each request must start with the token that the daemon writes to its {@link #getTokenFile() token file},
+ * which only its owner can read. The progress port is that of a {@link RemoteProgressBarReceiver}, or 0 for none. The daemon
+ * parses every accepted path in the root directory, reporting progress to the receiver, and hands the
+ * source files to its {@link Handler}. It then answers with {@code OK <count>}, or with {@code ERROR}
+ * followed by a base64 {@link RemoteException#encode() encoded} exception, which is also thrown to the receiver.
+ * <p>
+ * The parsers are not safe to call concurrently, so requests are parsed one at a time, although a
+ * {@link OmniParser.Builder#parallel(boolean) parallel} parser still spreads each parse over its workers.
+ * A few requests are served at once and a bounded number wait their turn, beyond which connections are
+ * closed without an answer. Sessions are kept for the {@link #MAX_SESSIONS} most recently requested root
+ * directories, and the others are closed.
+ */
+public class OmniParserDaemon implements AutoCloseable {
+    static final int MAX_CONCURRENT_REQUESTS = 4;
+    static final int MAX_QUEUED_REQUESTS = 64;
+    static final int MAX_SESSIONS = 16;
+    static final int MAX_REQUEST_LENGTH = 8192;
+
+    private static final FileAttribute<Set<PosixFilePermission>> OWNER_ONLY =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+    private static final FileAttribute<Set<PosixFilePermission>> OWNER_ONLY_DIRECTORY =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"));
+
+    private final OmniParser parser;
+    private final Handler handler;
+    private final ServerSocketChannel server;
+
+    @Nullable
+    private final Path socketPath;
+
+    @Getter
+    private final SocketAddress address;
+
+    /**
+     * The file holding the token that requests over TCP must start with, or null when the daemon listens on
+     * a Unix domain socket.
+     */
+    @Getter
+    @Nullable
+    private final Path tokenFile;
+
+    @Nullable
+    private final byte[] token;
+
+    /**
+     * The session of each root directory, least recently requested first. Guarded by itself.
+     */
+    private final Map<Path, OmniParser.Session> sessions = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Object parseLock = new Object();
+    private final ExecutorService requests;
+    private volatile boolean closed;
+
+    private OmniParserDaemon(OmniParser parser, Handler handler, ServerSocketChannel server, SocketAddress address,
+                             @Nullable Path socketPath, @Nullable Path tokenFile) throws IOException {
+        this.parser = parser;
+        this.handler = handler;
+        this.server = server;
+        this.socketPath = socketPath;
+        this.address = address;
+        this.tokenFile = tokenFile;
+        this.token = tokenFile == null ? null : Files.readAllBytes(tokenFile);
+        AtomicInteger thread = new AtomicInteger();
+        // One more thread than requests served at once, for accepting connections
+        this.requests = new ThreadPoolExecutor(MAX_CONCURRENT_REQUESTS + 1, MAX_CONCURRENT_REQUESTS + 1,
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_REQUESTS), r -> {
+            Thread t = new Thread(r, "omni-parser-daemon-" + thread.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        requests.execute(this::accept);
+    }
+
+    /**
+     * @param socketPath Where to create the Unix domain socket, or null to listen on a loopback TCP port.
+     *                   A loopback TCP port is also used when the runtime does not support Unix domain sockets.
+     *                   A socket left behind at this path by a daemon that is no longer running is replaced,
+     *                   but anything else already there makes the daemon fail to start.
+     */
+    public static OmniParserDaemon start(OmniParser parser, @Nullable Path socketPath, Handler handler) {
+        try {
+            SocketAddress unixAddress = socketPath == null ? null : unixDomainAddress(socketPath);
+            ServerSocketChannel unix = unixAddress == null ? null : openUnixDomain(socketPath, unixAddress);
+            if (unix != null) {
+                return new OmniParserDaemon(parser, handler, unix, unixAddress, socketPath, null);
+            }
+            Path tokenFile = writeTokenFile();
+            try {
+                ServerSocketChannel tcp = ServerSocketChannel.open();
+                tcp.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                return new OmniParserDaemon(parser, handler, tcp, tcp.getLocalAddress(), null, tokenFile);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tokenFile);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path writeTokenFile() throws IOException {
+        byte[] random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        Path tokenFile = ownerOnly()
+                ? Files.createTempFile("omni-parser-daemon", ".token", OWNER_ONLY)
+                : Files.createTempFile("omni-parser-daemon", ".token");
+        Files.write(tokenFile, Base64.getUrlEncoder().withoutPadding().encode(random));
+        return tokenFile;
+    }
+
+    private static @Nullable SocketAddress unixDomainAddress(Path socketPath) throws IOException {
+        try {
+            return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+                    .getMethod("of", Path.class)
+                    .invoke(null, socketPath);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static @Nullable ServerSocketChannel openUnixDomain(Path socketPath, SocketAddress address) throws IOException {
+        ServerSocketChannel server;
+        try {
+            server = (ServerSocketChannel) ServerSocketChannel.class
+                    .getMethod("open", ProtocolFamily.class)
+                    .invoke(null, StandardProtocolFamily.valueOf("UNIX"));
+        } catch (NoSuchMethodException | IllegalAccessException | IllegalArgumentException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof UnsupportedOperationException) {
+                return null;
+            }
+            throw new IOException(e.getCause());
+        }
+        try {
+            removeStaleSocket(socketPath, address);
+            if (ownerOnly()) {
+                bindOwnerOnly(server, socketPath);
+            } else {
+                server.bind(address);
+            }
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        return server;
+    }
+
+    /**
+     * Bind {@code server} to a socket that only its owner can connect to at any time. The socket is bound in
+     * a directory that only the owner can enter, restricted there, and only then moved to {@code socketPath}.
+     */
+    private static void bindOwnerOnly(ServerSocketChannel server, Path socketPath) throws IOException {
+        Path parent = socketPath.toAbsolutePath().getParent();
+        Path privateDir = Files.createTempDirectory(parent, ".omni-parser-daemon", OWNER_ONLY_DIRECTORY);
+        Path bound = privateDir.resolve("sock");
+        try {
+            server.bind(requireNonNull(unixDomainAddress(bound)));
+            Files.setPosixFilePermissions(bound, PosixFilePermissions.fromString("rw-------"));
+            // A rename within one directory tree, which fails rather than replace anything put there meanwhile
+            Files.move(bound, socketPath);
+        } finally {
+            Files.deleteIfExists(bound);
+            Files.delete(privateDir);
+        }
+    }
+
+    /**
+     * Delete a socket at {@code socketPath} that no daemon is listening on anymore.
+     *
+     * @throws IOException if anything else is at {@code socketPath}.
+     */
+    private static void removeStaleSocket(Path socketPath, SocketAddress address) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(socketPath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return;
+        }
+        if (!attrs.isOther()) {
+            throw new FileAlreadyExistsException(socketPath.toString(), null, "Not a socket");
+        }
+        try (SocketChannel ignored = SocketChannel.open(address)) {
+            throw new FileAlreadyExistsException(socketPath.toString(), null, "Another daemon is listening on it");
+        } catch (ConnectException e) {
+            Files.delete(socketPath);
+        }
+    }
+
+    private static boolean ownerOnly() {
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                SocketChannel client = server.accept();
+                try {
+                    requests.execute(() -> serve(client));
+                } catch (RejectedExecutionException e) {
+                    // too many requests are waiting already
+                    client.close();
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (SocketChannel c = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(c), UTF_8));
+             Writer out = new OutputStreamWriter(Channels.newOutputStream(c), UTF_8)) {
+            String request = readRequest(in);
+            if (request == null) {
+                return;
+            }
+            out.write(request.length() > MAX_REQUEST_LENGTH ?
+                    error(RemoteException.builder("Request exceeds " + MAX_REQUEST_LENGTH + " characters").build(), null) :
+                    handle(request));
+            out.write('\n');
+        } catch (IOException ignored) {
+            // the client may have gone away, there is no one left to report to
+        }
+    }
+
+    /**
+     * Read one line, but no more than one character beyond {@link #MAX_REQUEST_LENGTH}.
+     *
+     * @return The line without its terminator, or null if the client sent nothing.
+     */
+    private static @Nullable String readRequest(Reader in) throws IOException {
+        StringBuilder request = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0) {
+                return request.length() == 0 ? null : request.toString();
+            }
+            request.append((char) c);
+            if (request.length() > MAX_REQUEST_LENGTH) {
+                break;
+            }
+        }
+        int length = request.length();
+        return length > 0 && request.charAt(length - 1) == '\r' ? request.substring(0, length - 1) : request.toString();
+    }
+
+    private String handle(String request) {
+        if (token != null) {
+            int space = request.indexOf(' ');
+            if (space < 0 || !MessageDigest.isEqual(token, request.substring(0, space).getBytes(UTF_8))) {
+                return error(RemoteException.builder("Missing or wrong token").build(), null);
+            }
+            request = request.substring(space + 1);
+        }
+        int space = request.indexOf(' ');
+        int progressPort;
+        Path rootDir;
+        try {
+            progressPort = Integer.parseInt(request.substring(0, Math.max(space, 0)));
+            rootDir = Paths.get(request.substring(space + 1)).toAbsolutePath().normalize();
+        } catch (RuntimeException e) {
+            return error(RemoteException.builder("Malformed request: " + request).build(), null);
+        }
+
+        RemoteProgressBarSender progress = progressPort > 0 ? new RemoteProgressBarSender(progressPort) : null;
+        try {
+            List<Path> paths = acceptedPaths(rootDir);
+            if (progress != null) {
+                progress.setMax(paths.size());
+            }
+            int count;
+            synchronized (parseLock) {
+                AtomicInteger parsed = new AtomicInteger();
+                try (Stream<SourceFile> sourceFiles = parser.parse(paths, rootDir, new InMemoryExecutionContext())) {
+                    handler.parsed(rootDir, sourceFiles.peek(sourceFile -> {
+                        parsed.incrementAndGet();
+                        if (progress != null) {
+                            FileAttributes fileAttributes = sourceFile.getFileAttributes();
+                            if (fileAttributes == null) {
+                                progress.step();
+                            } else {
+                                progress.step(fileAttributes.getSize());
+                            }
+                        }
+                    }));
+                }
+                count = parsed.get();
+            }
+            return "OK " + count;
+        } catch (Throwable t) {
+            return error(RemoteException.builder("Failed to parse " + rootDir)
+                    .cause(t)
+                    .build(), progress);
+        } finally {
+            if (progress != null) {
+                progress.close();
+            }
+        }
+    }
+
+    private List<Path> acceptedPaths(Path rootDir) {
+        while (true) {
+            OmniParser.Session session = session(rootDir);
+            // The session's cached repository state is not meant to be walked concurrently
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (session) {
+                synchronized (sessions) {
+                    if (sessions.get(rootDir) != session) {
+                        // evicted, and closed once this lock is released, by a request for another root
+                        continue;
+                    }
+                }
+                return session.acceptedPaths();
+            }
+        }
+    }
+
+    private OmniParser.Session session(Path rootDir) {
+        List<OmniParser.Session> evicted = new ArrayList<>();
+        OmniParser.Session session;
+        synchronized (sessions) {
+            session = sessions.computeIfAbsent(rootDir, parser::session);
+            Iterator<OmniParser.Session> leastRecent = sessions.values().iterator();
+            while (sessions.size() > MAX_SESSIONS) {
+                evicted.add(leastRecent.next());
+                leastRecent.remove();
+            }
+        }
+        for (OmniParser.Session s : evicted) {
+            // Wait for a walk that may still be using it
+            //noinspection SynchronizationOnLocalVariableOrMethodParameter
+            synchronized (s) {
+                s.close();
+            }
+        }
+        return session;
+    }
+
+    private static String error(RemoteException e, @Nullable RemoteProgressBarSender progress) {
+        if (progress != null) {
+            progress.throwRemote(e);
+        }
+        return "ERROR " + Base64.getEncoder().encodeToString(e.encode().getBytes(UTF_8));
+    }
+
+    /**
+     * Send a parse request to a daemon listening on a Unix domain socket and wait for it to complete.
+     *
+     * @param address      The daemon's {@link #getAddress() address}.
+     * @param rootDir      The root directory to parse.
+     * @param progressPort The port of a {@link RemoteProgressBarReceiver}, or 0 for none.
+     * @return The number of source files parsed.
+     * @throws RemoteException if the daemon failed to parse the root directory.
+     */
+    public static int request(SocketAddress address, Path rootDir, int progressPort) {
+        return request(address, null, rootDir, progressPort);
+    }
+
+    /**
+     * Send a parse request to a daemon and wait for it to complete.
+     *
+     * @param address      The daemon's {@link #getAddress() address}.
+     * @param tokenFile    The daemon's {@link #getTokenFile() token file}, which is required when it listens on TCP.
+     * @param rootDir      The root directory to parse.
+     * @param progressPort The port of a {@link RemoteProgressBarReceiver}, or 0 for none.
+     * @return The number of source files parsed.
+     * @throws RemoteException if the daemon failed to parse the root directory.
+     */
+    public static int request(SocketAddress address, @Nullable Path tokenFile, Path rootDir, int progressPort) {
+        try (SocketChannel channel = SocketChannel.open(address);
+             Writer out = new OutputStreamWriter(Channels.newOutputStream(channel), UTF_8);
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), UTF_8))) {
+            if (tokenFile != null) {
+                out.write(new String(Files.readAllBytes(tokenFile), UTF_8).trim() + " ");
+            }
+            out.write(progressPort + " " + rootDir.toAbsolutePath() + "\n");
+            out.flush();
+            String response = in.readLine();
+            if (response == null) {
+                throw RemoteException.builder("The daemon closed the connection without responding").build();
+            }
+            if (response.startsWith("ERROR ")) {
+                throw RemoteException.decode(new String(Base64.getDecoder().decode(response.substring(6)), UTF_8));
+            }
+            return Integer.parseInt(response.substring(3));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            server.close();
+            if (socketPath != null) {
+                Files.deleteIfExists(socketPath);
+            }
+            if (tokenFile != null) {
+                Files.deleteIfExists(tokenFile);
+            }
+        } catch (IOException ignored) {
+        }
+        requests.shutdownNow();
+        synchronized (sessions) {
+            for (OmniParser.Session session : sessions.values()) {
+                session.close();
+            }
+            sessions.clear();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * Consume the source files parsed for one request. Runs on the daemon's request thread, and the
+         * request completes when this returns.
+         */
+        void parsed(Path rootDir, Stream<SourceFile> sourceFiles);
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.SourceFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Keeps the source files of every accepted path under a root directory parsed, reparsing only the files
+ * that change. Changes are picked up by a {@link WatchService} or, where the file system does not support
+ * one or when asked to, by periodically comparing the size and modification time of every accepted path.
+ * Added and modified files are subject to the same exclusion, ignore and size rules as
+ * {@link OmniParser#acceptedPaths(Path, Path)}, and each change is reported to the listener as a
+ * {@link ChangeEvent} carrying the new source file. A failure to walk or parse is reported to the
+ * {@link ExecutionContext#getOnError() error handler} of the execution context, and watching continues.
+ */
+public class OmniParserWatcher implements AutoCloseable {
+    private static final long DEBOUNCE_MILLIS = 50;
+
+    private final OmniParser parser;
+    private final Path rootDir;
+    private final OmniParser.Session session;
+    private final ExecutionContext ctx;
+    private final Consumer<ChangeEvent> listener;
+    private final Map<Path, SourceFile> sourceFiles = new ConcurrentHashMap<>();
+
+    @Nullable
+    private final WatchService watchService;
+
+    @Nullable
+    private final Duration pollInterval;
+
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    /**
+     * The size and modification time of each accepted path as last seen by a poll.
+     */
+    private final Map<Path, List<Object>> polled = new HashMap<>();
+
+    private final Thread thread;
+    private volatile boolean closed;
+
+    private OmniParserWatcher(OmniParser parser, Path rootDir, @Nullable Duration pollInterval,
+                              ExecutionContext ctx, Consumer<ChangeEvent> listener) {
+        this.parser = parser;
+        this.rootDir = rootDir;
+        this.session = parser.session(rootDir);
+        this.ctx = ctx;
+        this.listener = listener;
+        this.watchService = pollInterval == null ? newWatchService(rootDir) : null;
+        this.pollInterval = watchService == null && pollInterval == null ? Duration.ofSeconds(2) : pollInterval;
+
+        try {
+            if (watchService != null) {
+                register(rootDir);
+            }
+            List<Path> accepted = new ArrayList<>();
+            session.acceptedPaths(rootDir, (path, size) -> {
+                accepted.add(path);
+                if (this.pollInterval != null) {
+                    polled.put(path, signature(path, size));
+                }
+            });
+            parse(accepted, false);
+
+            this.thread = new Thread(watchService == null ? this::poll : this::watch, "omni-parser-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (RuntimeException e) {
+            closeWatchService();
+            session.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parse every accepted path under {@code rootDir} and keep the result up to date with a {@link WatchService},
+     * falling back to polling every two seconds when the file system does not support watching.
+     */
+    public static OmniParserWatcher watch(OmniParser parser, Path rootDir, Consumer<ChangeEvent> listener) {
+        return watch(parser, rootDir, new InMemoryExecutionContext(), listener);
+    }
+
+    /**
+     * Like {@link #watch(OmniParser, Path, Consumer)}, parsing with {@code ctx} and reporting failures to its
+     * error handler.
+     */
+    public static OmniParserWatcher watch(OmniParser parser, Path rootDir, ExecutionContext ctx,
+                                          Consumer<ChangeEvent> listener) {
+        return new OmniParserWatcher(parser, rootDir, null, ctx, listener);
+    }
+
+    /**
+     * Like {@link #watch(OmniParser, Path, Consumer)}, but always polls, for example on network file systems
+     * where watch events are not delivered.
+     */
+    public static OmniParserWatcher poll(OmniParser parser, Path rootDir, Duration interval,
+                                         Consumer<ChangeEvent> listener) {
+        return poll(parser, rootDir, interval, new InMemoryExecutionContext(), listener);
+    }
+
+    /**
+     * Like {@link #poll(OmniParser, Path, Duration, Consumer)}, parsing with {@code ctx} and reporting failures
+     * to its error handler.
+     */
+    public static OmniParserWatcher poll(OmniParser parser, Path rootDir, Duration interval, ExecutionContext ctx,
+                                         Consumer<ChangeEvent> listener) {
+        return new OmniParserWatcher(parser, rootDir, interval, ctx, listener);
+    }
+
+    /**
+     * @return The current source file of every accepted path, keyed by absolute path.
+     */
+    public Map<Path, SourceFile> getSourceFiles() {
+        return Collections.unmodifiableMap(sourceFiles);
+    }
+
+    private static @Nullable WatchService newWatchService(Path rootDir) {
+        try {
+            return rootDir.getFileSystem().newWatchService();
+        } catch (UnsupportedOperationException | IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Watch {@code dir} and every directory beneath it that the walk would enter.
+     */
+    private void register(Path dir) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                    if (!d.equals(rootDir) && session.isSkippedDirectory(d)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    watchedDirectories.put(d.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), d);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // the directory may already have been deleted again
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void watch() {
+        WatchService watcher = Objects.requireNonNull(watchService);
+        while (!closed) {
+            try {
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = false;
+                // Block for the first change, then collect whatever else arrives shortly after into the same batch
+                for (WatchKey key = watcher.take(); key != null;
+                     key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    Path dir = watchedDirectories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == OVERFLOW || dir == null) {
+                            overflow = true;
+                            continue;
+                        }
+                        Path path = dir.resolve((Path) event.context());
+                        if (event.kind() == ENTRY_CREATE && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                            if (!session.isSkippedDirectory(path)) {
+                                register(path);
+                                changed.addAll(session.acceptedPaths(path));
+                            }
+                        } else {
+                            changed.add(path);
+                        }
+                    }
+                    if (!key.reset()) {
+                        watchedDirectories.remove(key);
+                    }
+                }
+                if (overflow) {
+                    // Events were lost, so reconcile against a full walk
+                    Set<Path> all = new HashSet<>(sourceFiles.keySet());
+                    all.addAll(session.acceptedPaths());
+                    changed.addAll(all);
+                }
+                apply(changed);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                ctx.getOnError().accept(e);
+            }
+        }
+    }
+
+    private void poll() {
+        Duration interval = Objects.requireNonNull(pollInterval);
+        while (!closed) {
+            try {
+                Thread.sleep(interval.toMillis());
+            } catch (InterruptedException e) {
+                return;
+            }
+            Set<Path> changed = new LinkedHashSet<>();
+            Set<Path> deleted = new HashSet<>(polled.keySet());
+            try {
+                session.acceptedPaths(rootDir, (path, size) -> {
+                    deleted.remove(path);
+                    List<Object> signature = signature(path, size);
+                    if (!signature.equals(polled.put(path, signature))) {
+                        changed.add(path);
+                    }
+                });
+                for (Path path : deleted) {
+                    polled.remove(path);
+                    changed.add(path);
+                }
+                apply(changed);
+            } catch (RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+                // look at these again on the next poll
+                polled.keySet().removeAll(changed);
+                ctx.getOnError().accept(e);
+            }
+        }
+    }
+
+    private static List<Object> signature(Path path, long size) {
+        try {
+            return Arrays.asList(size, Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS));
+        } catch (IOException e) {
+            return Collections.singletonList(size);
+        }
+    }
+
+    /**
+     * Reparse those of {@code changed} that are accepted and drop those that no longer are.
+     */
+    private void apply(Set<Path> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        List<Path> files = new ArrayList<>(changed.size());
+        for (Path path : changed) {
+            if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+                files.add(path);
+            } else {
+                removeUnder(path);
+            }
+        }
+
+        Set<Path> accepted = new LinkedHashSet<>();
+        for (List<Path> acceptedUnder : session.acceptedPaths(files).values()) {
+            accepted.addAll(acceptedUnder);
+        }
+        for (Path file : files) {
+            if (!accepted.contains(file)) {
+                // e.g. it has grown beyond the size threshold or is now gitignored
+                removeUnder(file);
+            }
+        }
+        parse(new ArrayList<>(accepted), true);
+    }
+
+    private void removeUnder(Path path) {
+        for (Iterator<Map.Entry<Path, SourceFile>> it = sourceFiles.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, SourceFile> entry = it.next();
+            if (entry.getKey().startsWith(path)) {
+                it.remove();
+                listener.accept(new ChangeEvent(ChangeEvent.Kind.Deleted, entry.getKey(), null));
+            }
+        }
+    }
+
+    private void parse(List<Path> paths, boolean notify) {
+        if (paths.isEmpty()) {
+            return;
+        }
+        try (Stream<SourceFile> parsed = parser.parse(paths, rootDir, ctx)) {
+            parsed.forEach(sourceFile -> {
+                Path path = rootDir.resolve(sourceFile.getSourcePath());
+                SourceFile previous = sourceFiles.put(path, sourceFile);
+                if (notify) {
+                    listener.accept(new ChangeEvent(previous == null ? ChangeEvent.Kind.Added : ChangeEvent.Kind.Modified,
+                            path, sourceFile));
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        closeWatchService();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        session.close();
+    }
+
+    private void closeWatchService() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class ChangeEvent {
+        private final Kind kind;
+
+        /**
+         * The absolute path of the file that changed.
+         */
+        private final Path path;
+
+        /**
+         * The newly parsed source file, or null when the file was deleted or is no longer accepted.
+         */
+        @Nullable
+        private final SourceFile sourceFile;
+
+        public enum Kind {
+            Added,
+            Modified,
+            Deleted
+        }
+    }
+}
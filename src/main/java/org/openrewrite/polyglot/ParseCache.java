@@ -0,0 +1,71 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.Parser;
+import org.openrewrite.SourceFile;
+import org.openrewrite.jgit.lib.ObjectId;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Source files parsed from git blobs, so that a blob shared by several commits is parsed only once. Entries
+ * are keyed by the parser, the blob id and the file name, since some parsers interpret content differently
+ * depending on the file name. The least recently used entries are evicted beyond {@code maxEntries}.
+ */
+final class ParseCache {
+    private final Map<List<Object>, SourceFile> sourceFiles;
+
+    @Getter
+    private final ParseCacheStats stats = new ParseCacheStats();
+
+    ParseCache(int maxEntries) {
+        this.sourceFiles = new LinkedHashMap<List<Object>, SourceFile>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, SourceFile> eldest) {
+                if (size() > maxEntries) {
+                    stats.recordEviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    static List<Object> key(Parser parser, ObjectId blobId, String fileName) {
+        return asList(parser, blobId, fileName);
+    }
+
+    synchronized @Nullable SourceFile get(List<Object> key) {
+        SourceFile sourceFile = sourceFiles.get(key);
+        if (sourceFile == null) {
+            stats.recordMiss();
+        } else {
+            stats.recordHit();
+        }
+        return sourceFile;
+    }
+
+    synchronized void put(List<Object> key, SourceFile sourceFile) {
+        sourceFiles.put(key, sourceFile);
+    }
+}
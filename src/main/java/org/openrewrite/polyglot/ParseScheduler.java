@@ -0,0 +1,349 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Parser;
+import org.openrewrite.SourceFile;
+import org.openrewrite.tree.ParseError;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Runs parse tasks on a pool of worker threads, largest first, so that a few big inputs do not start
+ * last and hold up the whole run. Every task is submitted when the stream is created, and its results are
+ * held until the consumer pulls them. Results are streamed either as tasks complete or, when order is
+ * preserved, in the order the tasks were given. Tasks that run longer than the timeout, once for each of
+ * their inputs, are abandoned and produce a {@link ParseError} for each of their inputs. With a {@link ConcurrencyLimit}, fewer
+ * tasks than there are workers may run at once while the heap is under pressure.
+ */
+@RequiredArgsConstructor
+final class ParseScheduler {
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final int parallelism;
+    private final boolean preserveOrder;
+
+    @Nullable
+    private final Duration timeout;
+
+    @Nullable
+    private final InputPrefetcher prefetcher;
+
+    private final ParserPool parserPool;
+
+    @Nullable
+    private final CancellationToken cancellationToken;
+
+    @Nullable
+    private final ConcurrencyLimit concurrencyLimit;
+
+    Stream<SourceFile> schedule(List<Task> tasks, @Nullable Path relativeTo, ExecutionContext ctx) {
+        if (tasks.isEmpty()) {
+            return Stream.empty();
+        }
+
+        List<Task> largestFirst = new ArrayList<>(tasks);
+        largestFirst.sort(Comparator.comparingLong(Task::getSize).reversed());
+
+        if (prefetcher != null) {
+            List<FileSource> largestFirstSources = new ArrayList<>(tasks.size());
+            for (Task task : largestFirst) {
+                largestFirstSources.addAll(task.fileSources);
+            }
+            prefetcher.start(largestFirstSources);
+        }
+
+        ThreadPoolExecutor executor = newExecutor(Math.min(parallelism, tasks.size()));
+        Map<Task, CompletableFuture<List<SourceFile>>> results = new IdentityHashMap<>(tasks.size());
+        BlockingQueue<CompletableFuture<List<SourceFile>>> completed = new LinkedBlockingQueue<>();
+        for (Task task : largestFirst) {
+            CompletableFuture<List<SourceFile>> result = new CompletableFuture<>();
+            executor.execute(() -> run(task, result, executor, relativeTo, ctx));
+            results.put(task, result);
+            if (!preserveOrder) {
+                result.whenComplete((sourceFiles, t) -> completed.add(result));
+            }
+        }
+        // Lets the workers exit once the queued tasks are done
+        executor.shutdown();
+
+        Runnable stopOnCancel = cancellationToken == null ? () -> {
+        } : cancellationToken.onCancel(() -> {
+            // Fail whatever has not completed yet, so the consumer is not left waiting on dropped tasks
+            for (CompletableFuture<List<SourceFile>> result : results.values()) {
+                result.completeExceptionally(new CancellationException("The parse was cancelled"));
+            }
+            executor.shutdownNow();
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
+        });
+        // The token may outlive the stream, which need not be closed, so stop referring to the results once there
+        // is nothing left to cancel
+        CompletableFuture.allOf(results.values().toArray(new CompletableFuture<?>[0]))
+                .whenComplete((done, t) -> stopOnCancel.run());
+
+        Iterator<CompletableFuture<List<SourceFile>>> inOrder = preserveOrder ?
+                tasks.stream().map(results::get).iterator() :
+                new Iterator<CompletableFuture<List<SourceFile>>>() {
+                    private int remaining = tasks.size();
+
+                    @Override
+                    public boolean hasNext() {
+                        return remaining > 0;
+                    }
+
+                    @Override
+                    public CompletableFuture<List<SourceFile>> next() {
+                        if (remaining-- <= 0) {
+                            throw new NoSuchElementException();
+                        }
+                        try {
+                            return completed.take();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new CancellationException("Interrupted while waiting for parse results");
+                        }
+                    }
+                };
+        Iterator<CompletableFuture<List<SourceFile>>> ordered = new Iterator<CompletableFuture<List<SourceFile>>>() {
+            @Override
+            public boolean hasNext() {
+                if (inOrder.hasNext()) {
+                    return true;
+                }
+                // Every result has been handed out, so there is nothing left to cancel
+                stopOnCancel.run();
+                return false;
+            }
+
+            @Override
+            public CompletableFuture<List<SourceFile>> next() {
+                return inOrder.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(ordered, tasks.size(), Spliterator.ORDERED), false)
+                .flatMap(result -> join(result).stream())
+                .onClose(() -> {
+                    stopOnCancel.run();
+                    executor.shutdownNow();
+                    if (prefetcher != null) {
+                        prefetcher.close();
+                    }
+                });
+    }
+
+    private void run(Task task, CompletableFuture<List<SourceFile>> result, ThreadPoolExecutor executor,
+                     @Nullable Path relativeTo, ExecutionContext ctx) {
+        if (result.isDone()) {
+            // Cancelled before the task was started
+            task.release();
+            return;
+        }
+        Runnable releasePermit = () -> {
+        };
+        if (concurrencyLimit != null) {
+            try {
+                releasePermit = concurrencyLimit.acquire();
+            } catch (InterruptedException e) {
+                result.completeExceptionally(new CancellationException("Interrupted while waiting for heap pressure to ease"));
+                task.release();
+                return;
+            }
+        }
+        // A task of several inputs parses them in one go, so it gets the budget of all of them
+        Deadline deadline = timeout == null ? null :
+                new Deadline(timeout.multipliedBy(task.inputs.size()), task, result, executor, releasePermit,
+                        relativeTo, ctx);
+        Parser parser = parserPool.acquire(task.parser);
+        try (Stream<SourceFile> parsed = parser.parseInputs(task.inputs, relativeTo, ctx)) {
+            List<SourceFile> sourceFiles = parsed.collect(toList());
+            if (deadline == null || !deadline.isAbandoned()) {
+                result.complete(sourceFiles);
+            }
+        } catch (Throwable t) {
+            // An abandoned parse may fail because of the interrupt, and its result is the deadline's to give
+            if (deadline == null || !deadline.isAbandoned()) {
+                result.completeExceptionally(t);
+            }
+        } finally {
+            if (deadline != null) {
+                deadline.finish();
+            }
+            parserPool.release(task.parser, parser);
+            task.release();
+            releasePermit.run();
+        }
+    }
+
+    private static List<SourceFile> join(CompletableFuture<List<SourceFile>> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads) {
+        int pool = POOL_COUNT.incrementAndGet();
+        AtomicInteger thread = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "omni-parser-" + pool + "-" + thread.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Abandons a running task once the timeout elapses, completing its result with a {@link ParseError}
+     * per input and interrupting the worker. The timer thread is shared by every scheduler, so it only
+     * claims the task, and the errors, which read each input's source again, are built on another thread.
+     */
+    private static final class Deadline implements Runnable {
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "omni-parser-deadline");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private static final ExecutorService ABANDON = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "omni-parser-abandon");
+            t.setDaemon(true);
+            return t;
+        });
+
+        private final Duration timeout;
+        private final Task task;
+        private final CompletableFuture<List<SourceFile>> result;
+        private final ThreadPoolExecutor executor;
+        private final Runnable releasePermit;
+
+        @Nullable
+        private final Path relativeTo;
+
+        private final ExecutionContext ctx;
+        private final Thread worker = Thread.currentThread();
+        private final long start = System.nanoTime();
+        private final ScheduledFuture<?> timer;
+        private boolean finished;
+        private volatile boolean abandoned;
+
+        Deadline(Duration timeout, Task task, CompletableFuture<List<SourceFile>> result, ThreadPoolExecutor executor,
+                 Runnable releasePermit, @Nullable Path relativeTo, ExecutionContext ctx) {
+            this.timeout = timeout;
+            this.task = task;
+            this.result = result;
+            this.executor = executor;
+            this.releasePermit = releasePermit;
+            this.relativeTo = relativeTo;
+            this.ctx = ctx;
+            this.timer = TIMER.schedule(this, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void run() {
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            synchronized (this) {
+                if (finished || result.isDone()) {
+                    return;
+                }
+                // Interrupt while the worker is certainly still on this task, as finish() cannot run meanwhile
+                abandoned = true;
+                worker.interrupt();
+                // The abandoned parse may ignore the interrupt and keep its worker busy, so add a worker until
+                // it returns to keep the remaining tasks flowing
+                synchronized (executor) {
+                    executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+                    executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+                }
+            }
+            task.release();
+            releasePermit.run();
+            ABANDON.execute(() -> {
+                List<SourceFile> parseErrors = new ArrayList<>(task.inputs.size());
+                for (Parser.Input input : task.inputs) {
+                    ParseTimeoutException e = new ParseTimeoutException(input.getPath(), timeout, elapsed);
+                    ctx.getOnError().accept(e);
+                    parseErrors.add(ParseError.build(task.parser, input, relativeTo, ctx, e));
+                }
+                result.complete(parseErrors);
+            });
+        }
+
+        boolean isAbandoned() {
+            return abandoned;
+        }
+
+        /**
+         * Called by the worker when the parse returns, so that a deadline which has not yet fired never will,
+         * and an interrupt from one which has does not leak into the worker's next task. The worker added
+         * when the task was abandoned is no longer needed, so the pool shrinks back.
+         */
+        synchronized void finish() {
+            finished = true;
+            timer.cancel(false);
+            if (abandoned) {
+                synchronized (executor) {
+                    executor.setCorePoolSize(executor.getCorePoolSize() - 1);
+                    executor.setMaximumPoolSize(executor.getMaximumPoolSize() - 1);
+                }
+            }
+            //noinspection ResultOfMethodCallIgnored
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Inputs that one parser parses together, and their total size in bytes.
+     */
+    @RequiredArgsConstructor
+    static final class Task {
+        private final Parser parser;
+        private final List<Parser.Input> inputs;
+
+        /**
+         * The sources of those inputs that are read from files, and so may be prefetched.
+         */
+        private final List<FileSource> fileSources;
+
+        @Getter
+        private final long size;
+
+        /**
+         * Release any prefetched content the parse did not consume, so that reading ahead continues.
+         */
+        void release() {
+            for (FileSource fileSource : fileSources) {
+                fileSource.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Recorded on the {@link org.openrewrite.tree.ParseError} of an input whose parse was abandoned because it
+ * exceeded the {@link OmniParser.Builder#parseTimeout(Duration) parse timeout}.
+ */
+@Getter
+public class ParseTimeoutException extends RuntimeException {
+    private final Duration timeout;
+    private final Duration elapsed;
+
+    public ParseTimeoutException(Path path, Duration timeout, Duration elapsed) {
+        super("Abandoned parsing " + path + " after " + elapsed.toMillis() + "ms, exceeding the parse timeout of " +
+              timeout.toMillis() + "ms");
+        this.timeout = timeout;
+        this.elapsed = elapsed;
+    }
+}
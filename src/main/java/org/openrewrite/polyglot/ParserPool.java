@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.openrewrite.Parser;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hands each parse worker its own instance of parsers that are not safe to call concurrently. Instances
+ * are built from the {@link Parser.Builder} of a {@link LazyParser} and returned to the pool after each
+ * parse, so there are never more instances of a parser than workers using it at once. Other parsers are
+ * shared between workers as they are.
+ */
+final class ParserPool {
+    private final Map<LazyParser, Queue<Parser>> idle = new ConcurrentHashMap<>();
+
+    Parser acquire(Parser parser) {
+        if (!(parser instanceof LazyParser)) {
+            return parser;
+        }
+        LazyParser lazy = (LazyParser) parser;
+        Parser instance = idle.computeIfAbsent(lazy, k -> new ConcurrentLinkedQueue<>()).poll();
+        return instance == null ? lazy.newInstance() : instance;
+    }
+
+    void release(Parser parser, Parser instance) {
+        if (parser != instance) {
+            idle.get(parser).add(instance);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.openrewrite.PathUtils.separatorsToUnix;
+
+/**
+ * Exclusions compiled against one root directory. Exact exclusions are resolved up front into a set of
+ * root-relative, '/'-separated paths, so that walkers which already know an entry's relative path can test
+ * it with a hash lookup instead of relativizing it and comparing it against every configured exclusion.
+ */
+final class PathExclusions {
+    private final Path rootDir;
+    private final FileSystem fileSystem;
+    private final Set<String> excludedPaths = new HashSet<>();
+    private final Collection<PathMatcher> matchers;
+
+    PathExclusions(Path rootDir, Collection<Path> exclusions, Collection<PathMatcher> matchers) {
+        this.rootDir = rootDir;
+        this.fileSystem = rootDir.getFileSystem();
+        this.matchers = matchers;
+        for (Path exclusion : exclusions) {
+            if (!exclusion.isAbsolute()) {
+                excludedPaths.add(separatorsToUnix(exclusion.toString()));
+            } else if (exclusion.startsWith(rootDir)) {
+                excludedPaths.add(separatorsToUnix(rootDir.relativize(exclusion).toString()));
+            }
+        }
+    }
+
+    boolean isExcluded(Path path) {
+        Path relativePath = path.isAbsolute() ? rootDir.relativize(path) : path;
+        return excludedPaths.contains(separatorsToUnix(relativePath.toString())) || matches(relativePath);
+    }
+
+    /**
+     * @param relativePath A '/'-separated path relative to the root directory, as produced by a {@code TreeWalk}.
+     * @return true if the path is excluded.
+     */
+    boolean isExcluded(String relativePath) {
+        if (excludedPaths.contains(relativePath)) {
+            return true;
+        }
+        return !matchers.isEmpty() && matches(fileSystem.getPath(relativePath));
+    }
+
+    private boolean matches(Path relativePath) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -28,6 +28,14 @@ public interface ProgressBar extends AutoCloseable {
 
     void step();
 
+    /**
+     * Step once for an input of {@code bytes} bytes, for progress bars that track throughput
+     * such as {@link ProgressTracker}.
+     */
+    default void step(long bytes) {
+        step();
+    }
+
     @SuppressWarnings("UnusedReturnValue")
     ProgressBar setExtraMessage(String extraMessage);
 
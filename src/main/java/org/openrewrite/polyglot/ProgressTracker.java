@@ -0,0 +1,212 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts the steps and bytes reported to any {@link ProgressBar}, derives files and bytes per second smoothed
+ * by an exponentially weighted moving average and, once the maximum is known, the time remaining. Rates are
+ * sampled at most twice a second, so a step costs two atomic increments and
+ * a clock read. Each sample appends the rate and time remaining to the delegate's extra message, which
+ * is how they reach a {@link RemoteProgressBarReceiver} or any other delegate that only knows about steps.
+ */
+public class ProgressTracker implements ProgressBar {
+    static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /**
+     * The time over which older samples' weight decays by a factor of e.
+     */
+    private static final double SMOOTHING_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final ProgressBar delegate;
+    private final LongSupplier nanoTime;
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long max = -1;
+    private volatile long nextSampleNanos;
+
+    @Nullable
+    private volatile String extraMessage;
+
+    private long sampledNanos;
+    private long sampledCount;
+    private long sampledBytes;
+    private volatile double filesPerSecond = Double.NaN;
+    private volatile double bytesPerSecond = Double.NaN;
+
+    public ProgressTracker(ProgressBar delegate) {
+        this(delegate, System::nanoTime);
+    }
+
+    ProgressTracker(ProgressBar delegate, LongSupplier nanoTime) {
+        this.delegate = delegate;
+        this.nanoTime = nanoTime;
+        this.sampledNanos = nanoTime.getAsLong();
+        this.nextSampleNanos = sampledNanos + SAMPLE_INTERVAL_NANOS;
+    }
+
+    @Override
+    public void step() {
+        step(0);
+    }
+
+    @Override
+    public void step(long bytes) {
+        count.incrementAndGet();
+        if (bytes > 0) {
+            this.bytes.addAndGet(bytes);
+        }
+        delegate.step(bytes);
+        long now = nanoTime.getAsLong();
+        if (now - nextSampleNanos >= 0) {
+            sample(now);
+        }
+    }
+
+    private synchronized void sample(long now) {
+        long elapsed = now - sampledNanos;
+        if (elapsed < SAMPLE_INTERVAL_NANOS) {
+            // another thread sampled first
+            return;
+        }
+        long c = count.get();
+        long b = bytes.get();
+        double seconds = elapsed / 1e9;
+        double files = (c - sampledCount) / seconds;
+        double byteRate = (b - sampledBytes) / seconds;
+        // Weight the new sample by how much time it covers, so that the smoothing does not depend on the sample rate
+        double alpha = 1 - Math.exp(-elapsed / SMOOTHING_NANOS);
+        filesPerSecond = Double.isNaN(filesPerSecond) ? files : filesPerSecond + alpha * (files - filesPerSecond);
+        bytesPerSecond = Double.isNaN(bytesPerSecond) ? byteRate : bytesPerSecond + alpha * (byteRate - bytesPerSecond);
+        sampledNanos = now;
+        sampledCount = c;
+        sampledBytes = b;
+        nextSampleNanos = now + SAMPLE_INTERVAL_NANOS;
+        delegate.setExtraMessage(withRate(extraMessage));
+    }
+
+    /**
+     * @return The number of steps so far.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return The number of bytes reported by {@link #step(long)} so far.
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return The expected number of steps, or -1 when it has not been set.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return The smoothed number of steps per second, or NaN before the first sample.
+     */
+    public double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    /**
+     * @return The smoothed number of bytes per second, or NaN before the first sample.
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return The time remaining at the current rate, or null while the maximum or the rate is unknown.
+     */
+    public @Nullable Duration getEta() {
+        long m = max;
+        double rate = filesPerSecond;
+        if (m < 0 || Double.isNaN(rate) || rate <= 0) {
+            return null;
+        }
+        long remaining = Math.max(0, m - count.get());
+        return Duration.ofMillis((long) (remaining / rate * 1000));
+    }
+
+    private String withRate(@Nullable String message) {
+        StringBuilder s = new StringBuilder();
+        if (message != null && !message.isEmpty()) {
+            s.append(message).append(' ');
+        }
+        s.append(String.format(Locale.ROOT, "(%.1f files/s", filesPerSecond));
+        if (bytesPerSecond >= 1024 * 1024) {
+            s.append(String.format(Locale.ROOT, ", %.1f MB/s", bytesPerSecond / (1024 * 1024)));
+        } else if (bytesPerSecond > 0) {
+            s.append(String.format(Locale.ROOT, ", %.1f KB/s", bytesPerSecond / 1024));
+        }
+        Duration eta = getEta();
+        if (eta != null) {
+            long seconds = eta.getSeconds();
+            s.append(String.format(Locale.ROOT, ", ETA %d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60));
+        }
+        return s.append(')').toString();
+    }
+
+    @Override
+    public void intermediateResult(@Nullable String message) {
+        delegate.intermediateResult(message);
+    }
+
+    @Override
+    public void finish(String message) {
+        delegate.finish(message);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    @Override
+    public ProgressBar setExtraMessage(String extraMessage) {
+        this.extraMessage = extraMessage;
+        delegate.setExtraMessage(Double.isNaN(filesPerSecond) ? extraMessage : withRate(extraMessage));
+        return this;
+    }
+
+    @Override
+    public ProgressBar setMax(int max) {
+        return setMax((long) max);
+    }
+
+    /**
+     * Like {@link #setMax(int)}, for runs of more than {@link Integer#MAX_VALUE} steps. The delegate
+     * is given {@link Integer#MAX_VALUE} when the maximum does not fit.
+     */
+    public ProgressBar setMax(long max) {
+        this.max = max;
+        delegate.setMax((int) Math.min(max, Integer.MAX_VALUE));
+        return this;
+    }
+}
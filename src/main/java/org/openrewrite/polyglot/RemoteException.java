@@ -53,23 +53,36 @@ public class RemoteException extends RuntimeException {
     }
 
     public static class Builder {
+        /**
+         * The frames of this constructor and {@link RemoteException#builder(String, String...)} on top of {@link #creationSite}.
+         */
+        private static final int BUILDER_FRAMES = 2;
+
         private final String message;
         private final List<String> fixSuggestions = new ArrayList<>();
+        private final String[] stackTracePrefixFilter;
+
+        /**
+         * Where the builder was created. Its frames are only resolved and sanitized by {@link #build()},
+         * and not at all when a {@link #cause(Throwable, String...) cause} replaces them.
+         */
+        @Nullable
+        private Throwable creationSite;
+
+        @Nullable
         private String sanitizedStackTrace;
+
         private boolean partialSuccess;
 
         public Builder(String message, String... stackTracePrefixFilter) {
             this.message = message;
-            StringJoiner sanitized = new StringJoiner("\n");
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            StackTraceElement[] shortenedStackTrace = new StackTraceElement[stackTrace.length - 3];
-            System.arraycopy(stackTrace, 3, shortenedStackTrace, 0, stackTrace.length - 3);
-            sanitizeStackElements(sanitized, shortenedStackTrace, stackTracePrefixFilter);
-            this.sanitizedStackTrace = sanitized.toString();
+            this.stackTracePrefixFilter = stackTracePrefixFilter;
+            this.creationSite = new Throwable();
         }
 
         public Builder cause(Throwable t, String... stackTracePrefixFilter) {
             this.sanitizedStackTrace = sanitizeStackTrace(t, stackTracePrefixFilter);
+            this.creationSite = null;
             return this;
         }
 
@@ -88,6 +101,12 @@ public class RemoteException extends RuntimeException {
         }
 
         public RemoteException build() {
+            if (creationSite != null) {
+                StringJoiner sanitized = new StringJoiner("\n");
+                sanitizeStackElements(sanitized, creationSite.getStackTrace(), BUILDER_FRAMES, stackTracePrefixFilter);
+                sanitizedStackTrace = sanitized.toString();
+                creationSite = null;
+            }
             return new RemoteException(
                     message,
                     sanitizedStackTrace,
@@ -103,14 +122,16 @@ public class RemoteException extends RuntimeException {
         for (Throwable tt = t; tt != null; tt = tt.getCause(), causeDepth++) {
             sanitized.add((causeDepth == 0 ? "" : "Caused by ") +
                           tt.getClass().getName() + ": " + tt.getLocalizedMessage());
-            sanitizeStackElements(sanitized, tt.getStackTrace(), stackTracePrefixFilter);
+            sanitizeStackElements(sanitized, tt.getStackTrace(), 0, stackTracePrefixFilter);
         }
         return sanitized.toString();
     }
 
-    private static void sanitizeStackElements(StringJoiner sanitized, StackTraceElement[] stackTraceElements, String[] stackTracePrefixFilter) {
+    private static void sanitizeStackElements(StringJoiner sanitized, StackTraceElement[] stackTraceElements, int from,
+                                              String[] stackTracePrefixFilter) {
         int i = 0;
-        for (StackTraceElement stackTraceElement : stackTraceElements) {
+        for (int e = from; e < stackTraceElements.length; e++) {
+            StackTraceElement stackTraceElement = stackTraceElements[e];
             String stackTraceClass = stackTraceElement.getClassName();
             if (stackTraceClass.startsWith("java.util.stream") ||
                 stackTraceClass.startsWith("java.net.Inet")) {
@@ -15,33 +15,63 @@
  */
 package org.openrewrite.polyglot;
 
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import org.jspecify.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.DatagramSocket;
+import java.net.SocketAddress;
 import java.net.SocketException;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Receives the progress of any number of {@link RemoteProgressBarSender senders}, for example one per worker
+ * JVM of a parse fanned out across processes, and shows it on one delegate progress bar. Senders are told
+ * apart by their address. The delegate's maximum is the sum of the maximums each alive sender has set and every
+ * sender's steps advance it. A sender is {@link SenderProgress#isAlive() alive} as long as it has sent anything,
+ * such as a {@link RemoteProgressBarSender#heartbeat() heartbeat}, within the liveness timeout, so the maximum
+ * of a sender that died drops out of the total.
+ */
 public class RemoteProgressBarReceiver implements ProgressBar {
     private static final ExecutorService PROGRESS_RECEIVER_POOL = Executors.newCachedThreadPool();
 
     private final ProgressBar delegate;
     private final DatagramSocket socket;
+    private final Duration livenessTimeout;
     private volatile boolean closed;
     private final AtomicReference<String> thrown = new AtomicReference<>();
+    private final Map<SocketAddress, SenderProgress> senders = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum last set on the delegate on behalf of the senders, or -1 before any was. Only used by the
+     * receiving thread.
+     */
+    private int reportedMax = -1;
 
     public RemoteProgressBarReceiver(ProgressBar delegate) {
+        this(delegate, Duration.ofSeconds(10));
+    }
+
+    /**
+     * @param livenessTimeout How long a sender may stay silent before it is no longer considered alive.
+     */
+    public RemoteProgressBarReceiver(ProgressBar delegate, Duration livenessTimeout) {
         try {
             this.delegate = delegate;
+            this.livenessTimeout = livenessTimeout;
             this.socket = new DatagramSocket();
+            // Wake up regularly to notice senders that have gone silent
+            socket.setSoTimeout((int) Math.max(1, Math.min(livenessTimeout.toMillis() / 2, 1000)));
             PROGRESS_RECEIVER_POOL.submit(this::receive);
         } catch (SocketException e) {
             throw new UncheckedIOException(e);
@@ -62,28 +92,10 @@ public class RemoteProgressBarReceiver implements ProgressBar {
         try {
             while (!closed) {
                 RemoteProgressMessage message = RemoteProgressMessage.receive(socket, incompleteMessages);
-                if (message == null) {
-                    continue;
-                }
-                switch (message.getType()) {
-                    case Exception:
-                        if (message.getMessage() != null) {
-                            thrown.set(message.getMessage());
-                        }
-                        break;
-                    case IntermediateResult:
-                        delegate.intermediateResult(message.getMessage());
-                        break;
-                    case Step:
-                        delegate.step();
-                        break;
-                    case SetExtraMessage:
-                        delegate.setExtraMessage(requireNonNull(message.getMessage()));
-                        break;
-                    case SetMax:
-                        delegate.setMax(Integer.parseInt(requireNonNull(message.getMessage())));
-                        break;
+                if (message != null) {
+                    handle(message);
                 }
+                updateMax();
             }
         } catch (IOException e) {
             if (!closed) {
@@ -93,6 +105,92 @@ public class RemoteProgressBarReceiver implements ProgressBar {
         return 0;
     }
 
+    private void handle(RemoteProgressMessage message) {
+        SenderProgress sender = message.getSender() == null ? null :
+                senders.computeIfAbsent(message.getSender(), SenderProgress::new);
+        if (sender != null) {
+            sender.lastSeenNanos = System.nanoTime();
+        }
+        switch (message.getType()) {
+            case Exception:
+                if (message.getMessage() != null) {
+                    thrown.set(message.getMessage());
+                }
+                break;
+            case IntermediateResult:
+                delegate.intermediateResult(message.getMessage());
+                break;
+            case Step:
+                if (sender != null) {
+                    sender.steps++;
+                }
+                Long bytes = parseBytes(message.getMessage());
+                if (bytes == null) {
+                    delegate.step();
+                } else {
+                    delegate.step(bytes);
+                }
+                break;
+            case SetExtraMessage:
+                delegate.setExtraMessage(requireNonNull(message.getMessage()));
+                break;
+            case SetMax:
+                int max = Integer.parseInt(requireNonNull(message.getMessage()));
+                if (sender == null) {
+                    delegate.setMax(max);
+                } else {
+                    sender.max = max;
+                }
+                break;
+            case Heartbeat:
+                break;
+        }
+    }
+
+    /**
+     * @return The size of the input a step was sent for, or null if the sender did not say.
+     */
+    private static @Nullable Long parseBytes(@Nullable String message) {
+        try {
+            return message == null ? null : Long.valueOf(message);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Set the delegate's maximum when a sender has set its own, or has come or gone.
+     */
+    private void updateMax() {
+        int max = getMax();
+        // Leave the delegate alone until some sender has set a maximum
+        if (max != reportedMax && (reportedMax >= 0 || max > 0)) {
+            reportedMax = max;
+            delegate.setMax(max);
+        }
+    }
+
+    /**
+     * @return The sum of the maximums set by every {@link SenderProgress#isAlive() alive} sender, capped at
+     * {@link Integer#MAX_VALUE}.
+     */
+    public int getMax() {
+        long max = 0;
+        for (SenderProgress sender : senders.values()) {
+            if (sender.isAlive()) {
+                max += sender.max;
+            }
+        }
+        return (int) Math.min(max, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return The progress of every sender heard from so far, alive or not.
+     */
+    public Collection<SenderProgress> getSenders() {
+        return Collections.unmodifiableCollection(senders.values());
+    }
+
     @Override
     public void intermediateResult(@Nullable String message) {
         maybeThrow();
@@ -111,6 +209,12 @@ public class RemoteProgressBarReceiver implements ProgressBar {
         delegate.step();
     }
 
+    @Override
+    public void step(long bytes) {
+        maybeThrow();
+        delegate.step(bytes);
+    }
+
     @Override
     public ProgressBar setExtraMessage(String extraMessage) {
         maybeThrow();
@@ -130,6 +234,36 @@ public class RemoteProgressBarReceiver implements ProgressBar {
         maybeThrow();
     }
 
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public class SenderProgress {
+        @Getter
+        private final SocketAddress address;
+
+        // Only written by the receiving thread
+        private volatile int max;
+        private volatile long steps;
+        private volatile long lastSeenNanos;
+
+        public int getMax() {
+            return max;
+        }
+
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return How long ago anything was last received from this sender.
+         */
+        public Duration getSilence() {
+            return Duration.ofNanos(System.nanoTime() - lastSeenNanos);
+        }
+
+        public boolean isAlive() {
+            return getSilence().compareTo(livenessTimeout) < 0;
+        }
+    }
+
     private void maybeThrow() {
         String t = thrown.get();
         if (t != null) {
@@ -23,12 +23,26 @@ import java.io.UncheckedIOException;
 import java.net.*;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class RemoteProgressBarSender implements ProgressBar {
+    private static final ScheduledExecutorService HEARTBEATS = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "remote-progress-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
     private DatagramSocket socket;
     private InetAddress address;
     private int port;
 
+    @Nullable
+    private volatile ScheduledFuture<?> heartbeat;
+
     public RemoteProgressBarSender(int port) {
         this(null, port);
     }
@@ -68,6 +82,10 @@ public class RemoteProgressBarSender implements ProgressBar {
 
     @Override
     public void close() {
+        ScheduledFuture<?> h = heartbeat;
+        if (h != null) {
+            h.cancel(false);
+        }
         socket.close();
     }
 
@@ -76,6 +94,14 @@ public class RemoteProgressBarSender implements ProgressBar {
         send(Type.Step, null);
     }
 
+    /**
+     * Carries the size of the input along with the step, so that a receiver can report throughput.
+     */
+    @Override
+    public void step(long bytes) {
+        send(Type.Step, Long.toString(bytes));
+    }
+
     @Override
     public ProgressBar setExtraMessage(String extraMessage) {
         send(Type.SetExtraMessage, extraMessage);
@@ -88,6 +114,26 @@ public class RemoteProgressBarSender implements ProgressBar {
         return this;
     }
 
+    /**
+     * Tell the receiver that this sender is still alive, for example while a single large input takes
+     * a long time to parse and there are no steps to report.
+     */
+    public void heartbeat() {
+        send(Type.Heartbeat, null);
+    }
+
+    /**
+     * Send a {@link #heartbeat()} every {@code interval} until this sender is closed.
+     */
+    public RemoteProgressBarSender heartbeatEvery(Duration interval) {
+        ScheduledFuture<?> previous = heartbeat;
+        if (previous != null) {
+            previous.cancel(false);
+        }
+        heartbeat = HEARTBEATS.scheduleAtFixedRate(this::heartbeat, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+        return this;
+    }
+
     public void throwRemote(RemoteException ex) {
         send(Type.Exception, ex.encode());
     }
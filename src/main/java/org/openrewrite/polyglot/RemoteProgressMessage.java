@@ -23,6 +23,7 @@ import org.jspecify.annotations.Nullable;
 import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
+import java.net.SocketAddress;
 import java.net.SocketTimeoutException;
 import java.util.*;
 
@@ -32,6 +33,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 class RemoteProgressMessage {
     private static final String EOM = "__EOM__";
     private static final int PACKET_LENGTH = 128;
+    private static final int LATEST_VERSION = 3;
 
     @Getter
     private final UUID id;
@@ -39,6 +41,12 @@ class RemoteProgressMessage {
     @Getter
     private Type type;
 
+    /**
+     * The address of the sender, as seen by the receiver, which tells apart the senders sharing a receiver.
+     */
+    @Getter
+    private @Nullable SocketAddress sender;
+
     private final Map<Integer, String> fragments = new TreeMap<>();
     private int fragmentTotal = Integer.MAX_VALUE;
 
@@ -46,12 +54,20 @@ class RemoteProgressMessage {
         return fragments.isEmpty() ? null : String.join("", fragments.values());
     }
 
+    /**
+     * Each type is sent with the preamble of the protocol version that introduced it, so that receivers
+     * which predate a type drop its packets rather than misread them.
+     */
+    @RequiredArgsConstructor
     enum Type {
-        IntermediateResult,
-        Step,
-        SetExtraMessage,
-        SetMax,
-        Exception
+        IntermediateResult(2),
+        Step(2),
+        SetExtraMessage(2),
+        SetMax(2),
+        Exception(2),
+        Heartbeat(3);
+
+        private final int version;
     }
 
     public static @Nullable RemoteProgressMessage receive(DatagramSocket socket, Map<UUID, RemoteProgressMessage> incompleteMessages)
@@ -60,7 +76,11 @@ class RemoteProgressMessage {
         DatagramPacket packet = new DatagramPacket(buf, PACKET_LENGTH);
         try {
             socket.receive(packet);
-            return read(buf, packet.getLength(), incompleteMessages);
+            RemoteProgressMessage message = read(buf, packet.getLength(), incompleteMessages);
+            if (message != null) {
+                message.sender = packet.getSocketAddress();
+            }
+            return message;
         } catch (SocketTimeoutException ignored) {
         }
         return null;
@@ -75,28 +95,38 @@ class RemoteProgressMessage {
      */
     public static @Nullable RemoteProgressMessage read(byte[] packet, int length, Map<UUID, RemoteProgressMessage> incompleteMessages) {
         if (length < 42) {
-            return null; // not a V2 packet;
+            return null; // not a V2 or later packet;
         }
         byte[] preambleBytes = new byte[42];
         System.arraycopy(packet, 0, preambleBytes, 0, 42);
         String preamble = new String(preambleBytes);
 
-        if (!preamble.startsWith("v2")) {
+        int version = preamble.charAt(0) == 'v' ? Character.digit(preamble.charAt(1), 10) : -1;
+        if (version < 2 || version > LATEST_VERSION) {
             return null;
         }
 
-        UUID messageId = UUID.fromString(preamble.substring(2, 38));
-        RemoteProgressMessage message = incompleteMessages.computeIfAbsent(messageId, RemoteProgressMessage::new);
-
-        int typeOrdinal = Integer.parseInt(preamble.substring(38, 39));
-        for (Type t : Type.values()) {
-            if (typeOrdinal == t.ordinal()) {
-                message.type = t;
-                break;
+        UUID messageId;
+        Type type = null;
+        int index;
+        try {
+            messageId = UUID.fromString(preamble.substring(2, 38));
+            int typeOrdinal = Integer.parseInt(preamble.substring(38, 39));
+            for (Type t : Type.values()) {
+                if (typeOrdinal == t.ordinal()) {
+                    type = t;
+                    break;
+                }
             }
+            index = Integer.parseInt(preamble.substring(39, 42));
+        } catch (IllegalArgumentException e) {
+            return null; // a corrupted packet
         }
-
-        int index = Integer.parseInt(preamble.substring(39, 42));
+        if (type == null || type.version > version) {
+            return null; // sent by a newer sender with a message type this receiver does not know
+        }
+        RemoteProgressMessage message = incompleteMessages.computeIfAbsent(messageId, RemoteProgressMessage::new);
+        message.type = type;
 
         byte[] messageFragmentBytes = new byte[length - 42];
         System.arraycopy(packet, 42, messageFragmentBytes, 0, length - 42);
@@ -122,7 +152,7 @@ class RemoteProgressMessage {
         if (message != null) {
             byte[] messageBytes = message.getBytes();
             for (int i = 0; i < messageBytes.length; index++) {
-                byte[] preamble = ("v2" + messageId + type.ordinal() + encodeIndex(index)).getBytes(UTF_8);
+                byte[] preamble = ("v" + type.version + messageId + type.ordinal() + encodeIndex(index)).getBytes(UTF_8);
                 int packetMessageLength = Math.min(PACKET_LENGTH - preamble.length,
                         Math.min(messageBytes.length - i, PACKET_LENGTH));
 
@@ -135,7 +165,7 @@ class RemoteProgressMessage {
             }
         }
 
-        packets.add(("v2" + messageId + type.ordinal() + encodeIndex(index) + EOM).getBytes(UTF_8));
+        packets.add(("v" + type.version + messageId + type.ordinal() + encodeIndex(index) + EOM).getBytes(UTF_8));
         return packets;
     }
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.RequiredArgsConstructor;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Assigns units of files that must stay together to shards balanced by total bytes. Units are placed
+ * largest first onto the lightest shard, with ties broken by the units' paths and the shards' indices,
+ * so the assignment depends only on the files and their sizes and not on the order they were walked in.
+ * Files are held as relative paths and only resolved for the shards that are asked for.
+ */
+@RequiredArgsConstructor
+final class Shards {
+    private final Path rootDir;
+    private final Map<String, Unit> units = new HashMap<>();
+
+    /**
+     * @param unitKey      Files with the same key are kept in the same shard.
+     * @param relativePath The '/'-separated path relative to the root directory.
+     * @param size         The size of the file in bytes.
+     */
+    void add(String unitKey, String relativePath, long size) {
+        Unit unit = units.computeIfAbsent(unitKey, k -> new Unit());
+        unit.files.add(relativePath);
+        unit.size += size;
+    }
+
+    /**
+     * @param count The number of shards.
+     * @param keep  Which shards to return files for. The other shards are returned empty.
+     * @return The files of each shard, ordered by their relative paths.
+     */
+    List<List<Path>> partition(int count, IntPredicate keep) {
+        List<Unit> largestFirst = new ArrayList<>(units.values());
+        largestFirst.sort(Comparator.comparingLong((Unit u) -> u.size).reversed()
+                .thenComparing(u -> u.files.first()));
+
+        long[] shardSizes = new long[count];
+        int[] shardFiles = new int[count];
+        PriorityQueue<Integer> lightest = new PriorityQueue<>(count,
+                Comparator.comparingLong((Integer shard) -> shardSizes[shard])
+                        .thenComparingInt(shard -> shardFiles[shard])
+                        .thenComparingInt(shard -> shard));
+        List<SortedSet<String>> kept = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            lightest.add(shard);
+            kept.add(new TreeSet<>());
+        }
+
+        for (Unit unit : largestFirst) {
+            int shard = lightest.remove();
+            shardSizes[shard] += unit.size;
+            shardFiles[shard] += unit.files.size();
+            lightest.add(shard);
+            if (keep.test(shard)) {
+                kept.get(shard).addAll(unit.files);
+            }
+        }
+
+        List<List<Path>> shards = new ArrayList<>(count);
+        for (SortedSet<String> relativePaths : kept) {
+            List<Path> shard = new ArrayList<>(relativePaths.size());
+            for (String relativePath : relativePaths) {
+                shard.add(rootDir.resolve(relativePath));
+            }
+            shards.add(shard);
+        }
+        return shards;
+    }
+
+    private static final class Unit {
+        private final SortedSet<String> files = new TreeSet<>();
+        private long size;
+    }
+}
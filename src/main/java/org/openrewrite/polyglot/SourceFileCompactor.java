@@ -0,0 +1,134 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import lombok.Getter;
+import org.openrewrite.SourceFile;
+import org.openrewrite.json.JsonIsoVisitor;
+import org.openrewrite.json.tree.Json;
+import org.openrewrite.json.tree.Space;
+import org.openrewrite.xml.XmlIsoVisitor;
+import org.openrewrite.xml.tree.Xml;
+import org.openrewrite.yaml.YamlIsoVisitor;
+import org.openrewrite.yaml.tree.Yaml;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Replaces repeated immutable values in YAML, XML and JSON source files, such as whitespace prefixes, keys
+ * and tag names, with one canonical instance, so that every file's copy of the same value can be collected.
+ * The canonical instances are kept in a table that is shared by all parses and stops growing once it holds
+ * {@code maxEntries} values, after which only values already in it are replaced.
+ * <p>
+ * YAML anchors are left as they are, since aliases refer to the anchor instance. Source files of other
+ * languages are returned unchanged.
+ */
+final class SourceFileCompactor {
+    /**
+     * Approximate heap taken by a {@link String} besides its characters: the object and its array headers,
+     * the array reference and the cached hash.
+     */
+    private static final int STRING_OVERHEAD = 40;
+
+    /**
+     * Approximate heap taken by a JSON {@link Space}: the object header and its two references.
+     */
+    private static final int SPACE_OVERHEAD = 24;
+
+    private final int maxEntries;
+
+    @Getter
+    private final CompactionStats stats = new CompactionStats();
+
+    private final ConcurrentMap<String, String> strings = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Space> spaces = new ConcurrentHashMap<>();
+
+    SourceFileCompactor(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    SourceFile compact(SourceFile sourceFile) {
+        if (sourceFile instanceof Yaml.Documents) {
+            return (SourceFile) new YamlIsoVisitor<Integer>() {
+                @Override
+                public Yaml postVisit(Yaml tree, Integer p) {
+                    if (tree instanceof Yaml.Anchor) {
+                        // Aliases refer to their anchor by identity, so a new instance would detach them
+                        return tree;
+                    }
+                    Yaml y = tree.withPrefix(intern(tree.getPrefix()));
+                    if (y instanceof Yaml.Scalar) {
+                        Yaml.Scalar scalar = (Yaml.Scalar) y;
+                        y = scalar.withValue(intern(scalar.getValue()));
+                    }
+                    return y;
+                }
+            }.visitNonNull(sourceFile, 0);
+        } else if (sourceFile instanceof Xml.Document) {
+            return (SourceFile) new XmlIsoVisitor<Integer>() {
+                @Override
+                public Xml postVisit(Xml tree, Integer p) {
+                    Xml x = tree.withPrefix(intern(tree.getPrefix()));
+                    if (x instanceof Xml.Tag) {
+                        Xml.Tag tag = (Xml.Tag) x;
+                        x = tag.withName(intern(tag.getName()));
+                    }
+                    return x;
+                }
+            }.visitNonNull(sourceFile, 0);
+        } else if (sourceFile instanceof Json.Document) {
+            return (SourceFile) new JsonIsoVisitor<Integer>() {
+                @Override
+                public Json postVisit(Json tree, Integer p) {
+                    return tree.withPrefix(intern(tree.getPrefix()));
+                }
+            }.visitNonNull(sourceFile, 0);
+        }
+        return sourceFile;
+    }
+
+    private String intern(String value) {
+        String canonical = canonical(strings, value, value);
+        if (canonical != value) {
+            stats.record(STRING_OVERHEAD + value.length());
+        }
+        return canonical;
+    }
+
+    private Space intern(Space space) {
+        if (!space.getComments().isEmpty()) {
+            return space;
+        }
+        Space canonical = canonical(spaces, space.getWhitespace(), space);
+        if (canonical != space) {
+            stats.record(SPACE_OVERHEAD + STRING_OVERHEAD + space.getWhitespace().length());
+        }
+        return canonical;
+    }
+
+    private <T> T canonical(ConcurrentMap<String, T> table, String key, T value) {
+        T canonical = table.get(key);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (table.size() >= maxEntries) {
+            return value;
+        }
+        canonical = table.putIfAbsent(key, value);
+        return canonical == null ? value : canonical;
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.jspecify.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+/**
+ * The directories entered by a full walk of a git working tree, with their modification times and the paths
+ * accepted directly within them. A later walk that finds a directory, its {@code .gitignore}, the {@code .gitignore}
+ * of each of its ancestors and all of its subdirectories with the same modification times knows that no entry was
+ * added, removed, renamed or newly ignored beneath it, and can take the accepted paths from here instead of listing
+ * every file in the subtree.
+ * <p>
+ * A file whose content changes does not change its directory's modification time, so the sizes recorded in a
+ * snapshot may be out of date, and callers must check them again where it matters. Directories modified shortly
+ * before the walk that recorded them started are not recorded, since a change made in the same tick of a coarse
+ * file system clock would go unnoticed. The whole snapshot is discarded when the index or the ignore rules kept
+ * outside {@code .gitignore} files change.
+ */
+final class WalkSnapshot {
+    private static final long RACY_MILLIS = 2000;
+    private static final String GITIGNORE = ".gitignore";
+
+    private final Path rootDir;
+    private final Object index;
+    private final List<?> excludes;
+    private final long startedMillis = System.currentTimeMillis();
+
+    /**
+     * Keyed by '/'-separated path relative to the root directory, where "" is the root directory itself.
+     */
+    private final Map<String, Directory> directories = new HashMap<>();
+
+    /**
+     * Which directories have been found unchanged by the walk using this snapshot, of which there is at most one.
+     */
+    private final Map<String, Boolean> unchanged = new HashMap<>();
+
+    /**
+     * Which directories have been found to have the same {@code .gitignore} as well as every ancestor, by the walk
+     * using this snapshot.
+     */
+    private final Map<String, Boolean> ignoreUnchanged = new HashMap<>();
+
+    /**
+     * @param index    Identifies the version of the index, which is re-read whenever it changes.
+     * @param excludes Identifies the version of the ignore rules kept outside {@code .gitignore} files, such
+     *                 as the modification time of {@code .git/info/exclude}.
+     */
+    WalkSnapshot(Path rootDir, Object index, List<?> excludes) {
+        this.rootDir = rootDir;
+        this.index = index;
+        this.excludes = excludes;
+        FileTime gitignoreModified = modified(rootDir.resolve(GITIGNORE));
+        if (gitignoreModified == null || !isRacy(gitignoreModified)) {
+            // The root directory itself is never replayed, only its .gitignore is checked
+            directories.put("", new Directory(FileTime.fromMillis(0), gitignoreModified));
+        }
+    }
+
+    boolean isValidFor(Object index, List<?> excludes) {
+        if (this.index != index || !this.excludes.equals(excludes)) {
+            return false;
+        }
+        for (Object exclude : excludes) {
+            if (exclude instanceof FileTime && isRacy((FileTime) exclude)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record that the walk entered {@code relativePath}.
+     */
+    void directory(String relativePath) {
+        Directory parent = directories.get(parentOf(relativePath));
+        if (parent != null) {
+            parent.subdirectories.add(relativePath);
+        }
+        Path dir = rootDir.resolve(relativePath);
+        FileTime modified = modified(dir);
+        FileTime gitignoreModified = modified(dir.resolve(GITIGNORE));
+        if (!isRacy(modified) && (gitignoreModified == null || !isRacy(gitignoreModified))) {
+            directories.put(relativePath, new Directory(modified, gitignoreModified));
+        }
+    }
+
+    private boolean isRacy(@Nullable FileTime modified) {
+        return modified == null || modified.toMillis() >= startedMillis - RACY_MILLIS;
+    }
+
+    /**
+     * Record that the walk accepted the file at {@code relativePath}.
+     */
+    void file(String relativePath, long size) {
+        Directory parent = directories.get(parentOf(relativePath));
+        if (parent != null) {
+            parent.files.put(relativePath, size);
+        }
+    }
+
+    /**
+     * @return true if no entry beneath {@code relativePath} was added, removed or renamed since this snapshot was recorded.
+     */
+    boolean isUnchanged(String relativePath) {
+        Boolean known = unchanged.get(relativePath);
+        if (known != null) {
+            return known;
+        }
+        Directory directory = directories.get(relativePath);
+        boolean result = directory != null && isIgnoreUnchanged(relativePath);
+        if (result) {
+            result = directory.modified.equals(modified(rootDir.resolve(relativePath)));
+            for (Iterator<String> it = directory.subdirectories.iterator(); result && it.hasNext(); ) {
+                result = isUnchanged(it.next());
+            }
+        }
+        unchanged.put(relativePath, result);
+        return result;
+    }
+
+    /**
+     * @return true if the {@code .gitignore} of {@code relativePath} and of each of its ancestors is the one recorded.
+     */
+    private boolean isIgnoreUnchanged(String relativePath) {
+        Boolean known = ignoreUnchanged.get(relativePath);
+        if (known != null) {
+            return known;
+        }
+        Directory directory = directories.get(relativePath);
+        boolean result = directory != null &&
+                         Objects.equals(directory.gitignoreModified, modified(rootDir.resolve(relativePath).resolve(GITIGNORE))) &&
+                         (relativePath.isEmpty() || isIgnoreUnchanged(parentOf(relativePath)));
+        ignoreUnchanged.put(relativePath, result);
+        return result;
+    }
+
+    /**
+     * Report the paths accepted beneath an {@link #isUnchanged(String) unchanged} directory, and carry the
+     * directory over into the snapshot being recorded by the current walk.
+     */
+    void replay(String relativePath, WalkSnapshot into, FileConsumer onAccepted) {
+        Directory parent = into.directories.get(parentOf(relativePath));
+        if (parent != null) {
+            parent.subdirectories.add(relativePath);
+        }
+        replaySubtree(relativePath, into, onAccepted);
+    }
+
+    private void replaySubtree(String relativePath, WalkSnapshot into, FileConsumer onAccepted) {
+        Directory directory = directories.get(relativePath);
+        if (directory == null) {
+            return;
+        }
+        // Unchanged directories are not modified again, so the new snapshot can share them
+        into.directories.put(relativePath, directory);
+        for (Map.Entry<String, Long> file : directory.files.entrySet()) {
+            onAccepted.accept(file.getKey(), file.getValue());
+        }
+        for (String subdirectory : directory.subdirectories) {
+            replaySubtree(subdirectory, into, onAccepted);
+        }
+    }
+
+    static @Nullable FileTime modified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // never equal to a recorded time, so the directory is walked again
+            return FileTime.fromMillis(-1);
+        }
+    }
+
+    private static String parentOf(String relativePath) {
+        int slash = relativePath.lastIndexOf('/');
+        return slash < 0 ? "" : relativePath.substring(0, slash);
+    }
+
+    @FunctionalInterface
+    interface FileConsumer {
+        void accept(String relativePath, long size);
+    }
+
+    private static final class Directory {
+        private final FileTime modified;
+
+        @Nullable
+        private final FileTime gitignoreModified;
+
+        private final List<String> subdirectories = new ArrayList<>();
+        private final Map<String, Long> files = new LinkedHashMap<>();
+
+        private Directory(FileTime modified, @Nullable FileTime gitignoreModified) {
+            this.modified = modified;
+            this.gitignoreModified = gitignoreModified;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitTest {
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicBoolean underPressure = new AtomicBoolean();
+    private final AtomicLong now = new AtomicLong();
+
+    private final ConcurrencyLimit.Pressure pressure = new ConcurrencyLimit.Pressure() {
+        @Override
+        public long getEvents() {
+            return events.get();
+        }
+
+        @Override
+        public boolean isUnderPressure() {
+            return underPressure.get();
+        }
+    };
+
+    @Test
+    void backsOffAndRampsUp() throws Exception {
+        ConcurrencyLimit limit = new ConcurrencyLimit(8, pressure, now::get);
+        assertThat(limit.getLimit()).isEqualTo(8);
+
+        // every collection that leaves the heap full halves the limit, down to one
+        underPressure.set(true);
+        events.incrementAndGet();
+        assertThat(limit.getLimit()).isEqualTo(4);
+        events.addAndGet(5);
+        assertThat(limit.getLimit()).isEqualTo(2);
+        events.incrementAndGet();
+        assertThat(limit.getLimit()).isEqualTo(1);
+        events.incrementAndGet();
+        assertThat(limit.getLimit()).isEqualTo(1);
+
+        // no ramp up while the heap is still full
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        limit.acquire().run();
+        assertThat(limit.getLimit()).isEqualTo(1);
+
+        // once it has eased, by one per completed task at most once a second
+        underPressure.set(false);
+        limit.acquire().run();
+        assertThat(limit.getLimit()).isEqualTo(2);
+        limit.acquire().run();
+        assertThat(limit.getLimit()).isEqualTo(2);
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        limit.acquire().run();
+        assertThat(limit.getLimit()).isEqualTo(3);
+    }
+
+    @Test
+    void permitIsReleasedOnce() throws Exception {
+        ConcurrencyLimit limit = new ConcurrencyLimit(1, pressure, now::get);
+        Runnable permit = limit.acquire();
+        permit.run();
+        permit.run();
+
+        limit.acquire();
+        Thread waiting = new Thread(() -> {
+            try {
+                limit.acquire();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiting.start();
+        waiting.join(200);
+        assertThat(waiting.isAlive()).isTrue();
+        waiting.interrupt();
+        waiting.join();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.SourceFile;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.nio.file.Files.writeString;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OmniParserDaemonTest {
+
+    @TempDir
+    Path repo;
+
+    @Test
+    void parsesRequestsFromClients(@TempDir Path socketDir) throws Exception {
+        writeString(repo.resolve("application.yml"), "key: value\n");
+        writeString(repo.resolve("pom.xml"), "<project/>\n");
+
+        List<SourceFile> parsed = new CopyOnWriteArrayList<>();
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (OmniParserDaemon daemon = OmniParserDaemon.start(parser, socketDir.resolve("omni.sock"),
+          (rootDir, sourceFiles) -> parsed.addAll(sourceFiles.collect(toList())))) {
+            assertThat(OmniParserDaemon.request(daemon.getAddress(), repo, 0)).isEqualTo(2);
+
+            // the second request reuses the resident session for the same root
+            writeString(repo.resolve("other.yml"), "other: value\n");
+            assertThat(OmniParserDaemon.request(daemon.getAddress(), repo, 0)).isEqualTo(3);
+        }
+        assertThat(parsed).hasSize(5);
+    }
+
+    @Test
+    void doesNotReplaceWhatIsAtTheSocketPath(@TempDir Path socketDir) throws Exception {
+        Path socketPath = socketDir.resolve("omni.sock");
+        writeString(socketPath, "not a socket");
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+
+        assertThatThrownBy(() -> OmniParserDaemon.start(parser, socketPath, (rootDir, sourceFiles) -> {
+        })).isInstanceOf(UncheckedIOException.class);
+        assertThat(socketPath).hasContent("not a socket");
+    }
+
+    @Test
+    void doesNotReplaceSocketOfRunningDaemon(@TempDir Path socketDir) throws Exception {
+        writeString(repo.resolve("application.yml"), "key: value\n");
+        Path socketPath = socketDir.resolve("omni.sock");
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+
+        try (OmniParserDaemon daemon = OmniParserDaemon.start(parser, socketPath, (rootDir, sourceFiles) -> sourceFiles.count())) {
+            assertThat(daemon.getTokenFile()).isNull();
+            assertThatThrownBy(() -> OmniParserDaemon.start(parser, socketPath, (rootDir, sourceFiles) -> {
+            })).isInstanceOf(UncheckedIOException.class);
+            assertThat(OmniParserDaemon.request(daemon.getAddress(), repo, 0)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void tcpRequestsRequireToken() throws Exception {
+        writeString(repo.resolve("application.yml"), "key: value\n");
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+
+        Path tokenFile;
+        try (OmniParserDaemon daemon = OmniParserDaemon.start(parser, null, (rootDir, sourceFiles) -> sourceFiles.count())) {
+            tokenFile = daemon.getTokenFile();
+            assertThat(tokenFile).isNotNull();
+            assertThatThrownBy(() -> OmniParserDaemon.request(daemon.getAddress(), repo, 0))
+              .isInstanceOf(RemoteException.class);
+            assertThat(OmniParserDaemon.request(daemon.getAddress(), tokenFile, repo, 0)).isEqualTo(1);
+        }
+        assertThat(Files.exists(tokenFile)).isFalse();
+    }
+
+    @Test
+    void rejectsOverlongRequests(@TempDir Path socketDir) {
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (OmniParserDaemon daemon = OmniParserDaemon.start(parser, socketDir.resolve("omni.sock"),
+          (rootDir, sourceFiles) -> sourceFiles.count())) {
+            Path overlong = repo.resolve("a".repeat(OmniParserDaemon.MAX_REQUEST_LENGTH));
+            assertThatThrownBy(() -> OmniParserDaemon.request(daemon.getAddress(), daemon.getTokenFile(), overlong, 0))
+              .isInstanceOf(RemoteException.class)
+              .hasMessageContaining("Request exceeds");
+        }
+    }
+
+    @Test
+    void evictedSessionsAreReopenedOnRequest(@TempDir Path socketDir, @TempDir Path roots) throws Exception {
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (OmniParserDaemon daemon = OmniParserDaemon.start(parser, socketDir.resolve("omni.sock"),
+          (rootDir, sourceFiles) -> sourceFiles.count())) {
+            for (int i = 0; i <= OmniParserDaemon.MAX_SESSIONS; i++) {
+                Path root = Files.createDirectory(roots.resolve("root" + i));
+                writeString(root.resolve("application.yml"), "key: value\n");
+                assertThat(OmniParserDaemon.request(daemon.getAddress(), daemon.getTokenFile(), root, 0)).isEqualTo(1);
+            }
+            // the first root's session was evicted by the last request
+            assertThat(OmniParserDaemon.request(daemon.getAddress(), daemon.getTokenFile(), roots.resolve("root0"), 0))
+              .isEqualTo(1);
+        }
+    }
+}
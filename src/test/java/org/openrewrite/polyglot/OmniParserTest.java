@@ -15,25 +15,47 @@
  */
 package org.openrewrite.polyglot;
 
+import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.openrewrite.ExecutionContext;
 import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Parser;
 import org.openrewrite.SourceFile;
+import org.openrewrite.gradle.GradleParser;
+import org.openrewrite.groovy.GroovyParser;
 import org.openrewrite.java.JavaParser;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.JavaType;
 import org.openrewrite.java.tree.TypeUtils;
 import org.openrewrite.jgit.api.Git;
 import org.openrewrite.jgit.transport.URIish;
+import org.openrewrite.text.PlainText;
+import org.openrewrite.text.PlainTextParser;
+import org.openrewrite.tree.ParseError;
+import org.openrewrite.yaml.YamlIsoVisitor;
+import org.openrewrite.yaml.YamlParser;
+import org.openrewrite.yaml.tree.Yaml;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static java.nio.file.Files.writeString;
+import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.openrewrite.PathUtils.separatorsToSystem;
 import static org.openrewrite.jgit.util.FileUtils.*;
 
@@ -127,6 +149,718 @@ class OmniParserTest {
           .containsExactlyInAnyOrderElementsOf(folderPaths);
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void compactAcceptedPathsMatchAcceptedPaths(boolean gitRepo) throws Exception {
+        touch(repo.resolve("file.xml"));
+        mkdirs(repo.resolve("folder/subfolder").toFile());
+        touch(repo.resolve("folder/fileinfolder.xml"));
+        touch(repo.resolve("folder/subfolder/café.yml"));
+        touch(repo.resolve("folder/subfolder/other.yml"));
+
+        if (gitRepo) {
+            initGit(repo);
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        CompactPathList compact = parser.compactAcceptedPaths(repo, repo);
+        assertThat(compact).containsExactlyElementsOf(parser.acceptedPaths(repo));
+        assertThat(compact).hasSize(4);
+        assertThat(parser.compactAcceptedPaths(repo, repo.resolve("folder/subfolder")))
+          .containsExactlyInAnyOrder(
+            repo.resolve("folder/subfolder/café.yml"),
+            repo.resolve("folder/subfolder/other.yml")
+          );
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void exclusionMatchersPruneDirectories(boolean gitRepo) throws Exception {
+        touch(repo.resolve("file.xml"));
+        mkdirs(repo.resolve("generated/nested").toFile());
+        touch(repo.resolve("generated/nested/file.xml"));
+        mkdirs(repo.resolve("folder").toFile());
+        touch(repo.resolve("folder/excluded.yml"));
+        touch(repo.resolve("folder/included.yml"));
+
+        if (gitRepo) {
+            initGit(repo);
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .exclusions(List.of(repo.resolve("folder/excluded.yml")))
+          .exclusionMatchers(repo, List.of("generated"))
+          .build();
+
+        assertThat(parser.acceptedPaths(repo)).extracting(p -> repo.relativize(p).toString())
+          .contains("file.xml", separatorsToSystem("folder/included.yml"))
+          .doesNotContain(
+            separatorsToSystem("generated/nested/file.xml"),
+            separatorsToSystem("folder/excluded.yml")
+          );
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void sessionReusedAcrossSearchDirectories(boolean gitRepo) throws Exception {
+        mkdirs(repo.resolve("a").toFile());
+        touch(repo.resolve("a/a.xml"));
+        mkdirs(repo.resolve("b").toFile());
+        touch(repo.resolve("b/b.yml"));
+
+        if (gitRepo) {
+            initGit(repo);
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (OmniParser.Session session = parser.session(repo)) {
+            assertThat(session.acceptedPaths(repo.resolve("a"))).containsExactly(repo.resolve("a/a.xml"));
+            assertThat(session.acceptedPaths(repo.resolve("b"))).containsExactly(repo.resolve("b/b.yml"));
+            assertThat(session.acceptedPaths()).containsExactlyInAnyOrder(
+              repo.resolve("a/a.xml"), repo.resolve("b/b.yml"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void acceptedPathsForMultipleSearchDirectories(boolean gitRepo) throws Exception {
+        touch(repo.resolve("root.xml"));
+        mkdirs(repo.resolve("a/b").toFile());
+        touch(repo.resolve("a/a.xml"));
+        touch(repo.resolve("a/b/b.xml"));
+        mkdirs(repo.resolve("c").toFile());
+        touch(repo.resolve("c/c.yml"));
+
+        if (gitRepo) {
+            initGit(repo);
+        }
+
+        Path a = repo.resolve("a");
+        Path b = repo.resolve("a/b");
+        Path missing = repo.resolve("missing");
+        Map<Path, List<Path>> paths = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .build()
+          .acceptedPaths(repo, List.of(a, b, missing));
+
+        assertThat(paths).containsOnlyKeys(a, b, missing);
+        assertThat(paths.get(a)).containsExactlyInAnyOrder(repo.resolve("a/a.xml"), repo.resolve("a/b/b.xml"));
+        assertThat(paths.get(b)).containsExactly(repo.resolve("a/b/b.xml"));
+        assertThat(paths.get(missing)).isEmpty();
+    }
+
+    @Test
+    void parallelParsePreservesInputOrder() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Path path = repo.resolve("file" + i + ".yml");
+            writeString(path, "key: value\n".repeat(i * 100 + 1));
+            paths.add(path);
+        }
+
+        List<SourceFile> parsed = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parallel(true)
+          .parallelism(3)
+          .preserveOrder(true)
+          .build()
+          .parse(paths, repo, new InMemoryExecutionContext())
+          .toList();
+
+        assertThat(parsed).extracting(SourceFile::getSourcePath)
+          .containsExactlyElementsOf(paths.stream().map(repo::relativize).toList());
+    }
+
+    @Test
+    void parallelParseStartsLargestInputFirst() throws Exception {
+        writeString(repo.resolve("small.yml"), "key: value\n");
+        writeString(repo.resolve("large.yml"), "key: value\n".repeat(1000));
+        writeString(repo.resolve("medium.yml"), "key: value\n".repeat(100));
+
+        // With a single worker, results complete in the order their tasks were started
+        List<SourceFile> parsed = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parallel(true)
+          .parallelism(1)
+          .build()
+          .parseAll(repo)
+          .toList();
+
+        assertThat(parsed).extracting(sourceFile -> sourceFile.getSourcePath().toString())
+          .containsExactly("large.yml", "medium.yml", "small.yml");
+    }
+
+    @Test
+    void parallelParseKeepsInputsOfGroupingParsersTogether() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            writeString(repo.resolve("file" + i + ".txt"), "text " + i + "\n");
+            writeString(repo.resolve("file" + i + ".yml"), "key: " + i + "\n");
+        }
+
+        List<Integer> batches = new CopyOnWriteArrayList<>();
+        Parser plainText = PlainTextParser.builder().build();
+        Parser grouping = new Parser() {
+            @Override
+            public Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo, ExecutionContext ctx) {
+                int count = 0;
+                for (Input ignored : sources) {
+                    count++;
+                }
+                batches.add(count);
+                return plainText.parseInputs(sources, relativeTo, ctx);
+            }
+
+            @Override
+            public boolean accept(Path path) {
+                return path.toString().endsWith(".txt");
+            }
+
+            @Override
+            public Path sourcePathFromSourceText(Path prefix, String sourceCode) {
+                return prefix;
+            }
+        };
+
+        List<SourceFile> parsed = OmniParser.builder(OmniParser.defaultResourceParsers(), grouping)
+          .parallel(true)
+          .parallelism(4)
+          .build()
+          .parseAll(repo)
+          .toList();
+
+        assertThat(parsed).hasSize(8).noneMatch(ParseError.class::isInstance);
+        assertThat(batches).containsExactly(4);
+    }
+
+    @Test
+    void virtualThreadReads() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            writeString(repo.resolve("file" + i + ".yml"), "key" + i + ": value\n");
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parallel(true)
+          .virtualThreadReads(true)
+          .build();
+
+        assertThat(parser.parseAll(repo).toList())
+          .hasSize(20)
+          .noneMatch(ParseError.class::isInstance)
+          .allSatisfy(sourceFile -> assertThat(sourceFile.printAll())
+            .startsWith(sourceFile.getSourcePath().toString().replace("file", "key").replace(".yml", ":")));
+    }
+
+    @Test
+    void serialParsePrefetchesWithinByteBound() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            writeString(repo.resolve("file" + i + ".yml"), "key" + i + ": value\n");
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .prefetch(4, 32)
+          .build();
+
+        assertThat(parser.parseAll(repo).toList())
+          .hasSize(20)
+          .noneMatch(ParseError.class::isInstance)
+          .allSatisfy(sourceFile -> assertThat(sourceFile.printAll())
+            .startsWith(sourceFile.getSourcePath().toString().replace("file", "key").replace(".yml", ":")));
+
+        assertThat(parser.getPeakPrefetchedBytes()).isLessThanOrEqualTo(32);
+    }
+
+    @Test
+    void deferredParsersAreBuiltOnDemand() throws Exception {
+        writeString(repo.resolve("build.gradle"), "plugins { id 'java' }\n");
+        writeString(repo.resolve("Script.groovy"), "println 'hello'\n");
+        writeString(repo.resolve("application.yml"), "key: value\n");
+
+        OmniParser parser = OmniParser.builder(OmniParser.lazyResourceParsers())
+          .warmUpParsers(true)
+          .build();
+
+        assertThat(parser.acceptedPaths(repo)).containsExactlyInAnyOrder(
+          repo.resolve("build.gradle"), repo.resolve("Script.groovy"), repo.resolve("application.yml"));
+        assertThat(parser.parseAll(repo).toList())
+          .hasSize(3)
+          .noneMatch(ParseError.class::isInstance);
+    }
+
+    @Test
+    void defaultResourceParsersAreBuilt() {
+        assertThat(OmniParser.defaultResourceParsers())
+          .anyMatch(GroovyParser.class::isInstance)
+          .anyMatch(GradleParser.class::isInstance);
+    }
+
+    @Test
+    void lazyResourceParsersAcceptWhatDefaultResourceParsersAccept() {
+        List<Parser> eager = OmniParser.defaultResourceParsers();
+        List<Parser> lazy = OmniParser.lazyResourceParsers();
+        for (String name : new String[]{"build.gradle", "settings.gradle.kts", "Script.groovy", "Jenkinsfile",
+          "Jenkinsfile.release", "init.gradle", "script.gvy", "build.gradle.backup", "pom.xml", "application.yml",
+          "notes.txt", "Dockerfile", "main.tf"}) {
+            Path path = repo.resolve(name);
+            assertThat(lazy.stream().anyMatch(p -> p.accept(path)))
+              .as(name)
+              .isEqualTo(eager.stream().anyMatch(p -> p.accept(path)));
+        }
+    }
+
+    @Test
+    void parallelParseUsesParserPerWorker() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            mkdirs(repo.resolve("module" + i).toFile());
+            writeString(repo.resolve("module" + i + "/build.gradle"), "plugins { id 'java' }\n");
+            writeString(repo.resolve("module" + i + "/notes.txt"), "module " + i + "\n");
+        }
+
+        List<Parser> parsers = new ArrayList<>(OmniParser.lazyResourceParsers());
+        parsers.add(OmniParser.perWorker(PlainTextParser.builder(), true));
+        OmniParser parser = OmniParser.builder(parsers)
+          .parallel(true)
+          .parallelism(4)
+          .build();
+
+        assertThat(parser.parseAll(repo).toList())
+          .hasSize(16)
+          .noneMatch(ParseError.class::isInstance);
+    }
+
+    @Test
+    void adaptiveParallelismStartsAtFullConcurrency() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            writeString(repo.resolve("file" + i + ".yml"), "key: " + i + "\n");
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parallel(true)
+          .parallelism(4)
+          .adaptiveParallelism(true)
+          .build();
+        assertThat(parser.getConcurrency()).isEqualTo(4);
+        assertThat(parser.parseAll(repo).toList())
+          .hasSize(8)
+          .noneMatch(ParseError.class::isInstance);
+
+        assertThat(OmniParser.builder(OmniParser.defaultResourceParsers()).build().getConcurrency()).isEqualTo(1);
+    }
+
+    @Test
+    void identicalFilesAreParsedOnce() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mkdirs(repo.resolve("module" + i).toFile());
+            writeString(repo.resolve("module" + i + "/tsconfig.json"), "{ \"compilerOptions\": {} }\n");
+        }
+        writeString(repo.resolve("module0/other.json"), "{ \"compilerOptions\": {} }\n");
+        writeString(repo.resolve("module1/application.yml"), "key: value\n");
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .deduplicate(true)
+          .build();
+
+        List<SourceFile> sourceFiles = parser.parseAll(repo).toList();
+        assertThat(sourceFiles).extracting(SourceFile::getSourcePath).containsExactlyInAnyOrder(
+          Path.of("module0/tsconfig.json"), Path.of("module1/tsconfig.json"), Path.of("module2/tsconfig.json"),
+          Path.of("module0/other.json"), Path.of("module1/application.yml"));
+        assertThat(sourceFiles).extracting(SourceFile::getId).doesNotHaveDuplicates();
+        assertThat(parser.getDeduplicationStats().getParsed()).isEqualTo(3);
+        assertThat(parser.getDeduplicationStats().getDuplicates()).isEqualTo(2);
+    }
+
+    @Test
+    void compactionSharesRepeatedValues() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            writeString(repo.resolve("file" + i + ".yml"), "root:\n  key: value\n  other: value\n");
+            writeString(repo.resolve("file" + i + ".xml"), "<root>\n  <key>value</key>\n</root>\n");
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .compact(1024)
+          .build();
+
+        assertThat(parser.parseAll(repo).toList())
+          .hasSize(10)
+          .allSatisfy(sourceFile -> assertThat(sourceFile.printAll())
+            .isEqualTo(Files.readString(repo.resolve(sourceFile.getSourcePath()))));
+        assertThat(parser.getCompactionStats().getReplaced()).isPositive();
+        assertThat(parser.getCompactionStats().getBytesSaved()).isPositive();
+    }
+
+    @Test
+    void compactionKeepsYamlAliasesOnTheirAnchors() throws Exception {
+        String yaml = "base: &a\n  key: value\nderived: *a\n";
+        for (int i = 0; i < 2; i++) {
+            writeString(repo.resolve("file" + i + ".yml"), yaml);
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .compact(1024)
+          .build();
+
+        assertThat(parser.parseAll(repo).toList())
+          .hasSize(2)
+          .allSatisfy(sourceFile -> {
+              assertThat(sourceFile.printAll()).isEqualTo(yaml);
+              List<Yaml.Anchor> anchors = new ArrayList<>();
+              List<Yaml.Anchor> aliased = new ArrayList<>();
+              new YamlIsoVisitor<Integer>() {
+                  @Override
+                  public Yaml.Anchor visitAnchor(Yaml.Anchor anchor, Integer p) {
+                      anchors.add(anchor);
+                      return anchor;
+                  }
+
+                  @Override
+                  public Yaml.Alias visitAlias(Yaml.Alias alias, Integer p) {
+                      aliased.add(alias.getAnchor());
+                      return alias;
+                  }
+              }.visit(sourceFile, 0);
+              assertThat(aliased).singleElement().isSameAs(anchors.get(0));
+          });
+    }
+
+    @Test
+    void parseRevisionWithoutCheckout() throws Exception {
+        writeString(repo.resolve("application.yml"), "key: committed\n");
+        mkdirs(repo.resolve("build").toFile());
+        writeString(repo.resolve("build/generated.yml"), "key: value\n");
+        initGit(repo);
+
+        // changes to the working tree are not seen
+        writeString(repo.resolve("application.yml"), "key: modified\n");
+        writeString(repo.resolve("untracked.yml"), "key: value\n");
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (Stream<SourceFile> sourceFiles = parser.parseRevision(repo, "HEAD", new InMemoryExecutionContext())) {
+            assertThat(sourceFiles.toList())
+              .singleElement()
+              .satisfies(sourceFile -> {
+                  assertThat(sourceFile.getSourcePath()).isEqualTo(Path.of("application.yml"));
+                  assertThat(sourceFile.printAll()).isEqualTo("key: committed\n");
+                  // attributes describe the blob, not a file at the tree-relative path
+                  assertThat(requireNonNull(sourceFile.getFileAttributes()).getSize())
+                    .isEqualTo("key: committed\n".length());
+              });
+        }
+    }
+
+    @Test
+    void parseCacheSharesBlobsAcrossRevisions() throws Exception {
+        writeString(repo.resolve("application.yml"), "key: value\n");
+        writeString(repo.resolve("pom.xml"), "<project/>\n");
+        initGit(repo);
+        try (Git git = Git.open(repo.toFile())) {
+            writeString(repo.resolve("pom.xml"), "<project><version>2</version></project>\n");
+            git.add().addFilepattern("pom.xml").call();
+            git.commit().setSign(false).setMessage("bump version").call();
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parseCache(100)
+          .build();
+        for (String revision : List.of("HEAD~1", "HEAD")) {
+            try (Stream<SourceFile> sourceFiles = parser.parseRevision(repo, revision, new InMemoryExecutionContext())) {
+                assertThat(sourceFiles.toList()).hasSize(2);
+            }
+        }
+        assertThat(parser.getParseCacheStats().getMisses()).isEqualTo(3);
+        assertThat(parser.getParseCacheStats().getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void parseCacheParsesIdenticalBlobsOfOneRevisionOnce() throws Exception {
+        mkdirs(repo.resolve("a").toFile());
+        mkdirs(repo.resolve("b").toFile());
+        writeString(repo.resolve("a/application.yml"), "key: value\n");
+        writeString(repo.resolve("b/application.yml"), "key: value\n");
+        initGit(repo);
+
+        AtomicInteger parsedInputs = new AtomicInteger();
+        YamlParser yaml = new YamlParser() {
+            @Override
+            public Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo, ExecutionContext ctx) {
+                sources.forEach(input -> parsedInputs.incrementAndGet());
+                return super.parseInputs(sources, relativeTo, ctx);
+            }
+        };
+        OmniParser parser = OmniParser.builder(yaml)
+          .parseCache(100)
+          .build();
+        try (Stream<SourceFile> sourceFiles = parser.parseRevision(repo, "HEAD", new InMemoryExecutionContext())) {
+            assertThat(sourceFiles.toList())
+              .extracting(SourceFile::getSourcePath)
+              .containsExactlyInAnyOrder(Path.of("a/application.yml"), Path.of("b/application.yml"));
+        }
+        assertThat(parsedInputs).hasValue(1);
+        assertThat(parser.getParseCacheStats().getMisses()).isEqualTo(1);
+        assertThat(parser.getParseCacheStats().getHits()).isEqualTo(0);
+    }
+
+    @Test
+    void snapshotOfUnchangedDirectoriesIsReused() throws Exception {
+        mkdirs(repo.resolve("unchanged/nested").toFile());
+        touch(repo.resolve("unchanged/nested/file.xml"));
+        mkdirs(repo.resolve("changed").toFile());
+        touch(repo.resolve("changed/file.xml"));
+        initGit(repo);
+        // Directories modified just before the first walk are not trusted, so age them
+        for (String dir : List.of("unchanged", "unchanged/nested", "changed")) {
+            Files.setLastModifiedTime(repo.resolve(dir), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .snapshotDirectories(true)
+          .build();
+        try (OmniParser.Session session = parser.session(repo)) {
+            assertThat(session.acceptedPaths()).containsExactlyInAnyOrder(
+              repo.resolve("unchanged/nested/file.xml"), repo.resolve("changed/file.xml"));
+
+            touch(repo.resolve("changed/added.xml"));
+            assertThat(session.acceptedPaths()).containsExactlyInAnyOrder(
+              repo.resolve("unchanged/nested/file.xml"), repo.resolve("changed/file.xml"),
+              repo.resolve("changed/added.xml"));
+        }
+    }
+
+    @Test
+    void snapshotIsNotReusedWhenAncestorGitignoreChanges() throws Exception {
+        touch(repo.resolve("tracked.xml"));
+        writeString(repo.resolve(".gitignore"), "");
+        initGit(repo);
+        mkdirs(repo.resolve("generated/nested").toFile());
+        touch(repo.resolve("generated/nested/file.xml"));
+        for (String path : List.of(".gitignore", "generated", "generated/nested")) {
+            Files.setLastModifiedTime(repo.resolve(path), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .snapshotDirectories(true)
+          .build();
+        try (OmniParser.Session session = parser.session(repo)) {
+            assertThat(session.acceptedPaths()).containsExactlyInAnyOrder(
+              repo.resolve("tracked.xml"), repo.resolve("generated/nested/file.xml"));
+
+            writeString(repo.resolve(".gitignore"), "nested/\n");
+            assertThat(session.acceptedPaths()).containsExactly(repo.resolve("tracked.xml"));
+        }
+    }
+
+    @Test
+    void snapshotKeepsRecordedSizesUntilDirectoryChanges() throws Exception {
+        mkdirs(repo.resolve("dir").toFile());
+        writeString(repo.resolve("dir/growing.yml"), "key: value\n");
+        initGit(repo);
+        Files.setLastModifiedTime(repo.resolve("dir"), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .snapshotDirectories(true)
+          .sizeThresholdMb(1)
+          .build();
+        try (OmniParser.Session session = parser.session(repo)) {
+            assertThat(session.acceptedPaths()).containsExactly(repo.resolve("dir/growing.yml"));
+
+            // rewriting a file in place leaves its directory's modification time as it was
+            writeString(repo.resolve("dir/growing.yml"), "key: value\n".repeat(200_000));
+            assertThat(session.acceptedPaths()).containsExactly(repo.resolve("dir/growing.yml"));
+
+            writeString(repo.resolve("dir/added.yml"), "key: value\n");
+            assertThat(session.acceptedPaths()).containsExactly(repo.resolve("dir/added.yml"));
+        }
+    }
+
+    @Test
+    void shardsAreBalancedByBytesAndDeterministic() throws Exception {
+        writeString(repo.resolve("large.yml"), "key: value\n".repeat(1000));
+        for (int i = 0; i < 10; i++) {
+            writeString(repo.resolve("small" + i + ".yml"), "key: value\n".repeat(100));
+        }
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parallel(true)
+          .build();
+
+        List<List<Path>> shards = parser.shards(repo, 2);
+        assertThat(shards).hasSize(2);
+        assertThat(shards.stream().flatMap(List::stream).toList())
+          .containsExactlyInAnyOrderElementsOf(parser.acceptedPaths(repo));
+        assertThat(shards.get(0)).containsExactly(repo.resolve("large.yml"));
+        assertThat(parser.shard(repo, 1, 2)).isEqualTo(shards.get(1));
+        assertThat(parser.shards(repo, 2)).isEqualTo(shards);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void shardsKeepParserGroupsTogether(boolean parallel) throws Exception {
+        writeString(repo.resolve("A.groovy"), "println 'a'\n");
+        writeString(repo.resolve("B.groovy"), "println 'b'\n");
+        for (int i = 0; i < 3; i++) {
+            writeString(repo.resolve("file" + i + ".yml"), "key: value\n".repeat(10 * (i + 1)));
+        }
+
+        List<List<Path>> shards = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parallel(parallel)
+          .build()
+          .shards(repo, 3);
+
+        // Groovy sources are parsed together, so they stay in one shard
+        assertThat(shards).filteredOn(shard -> shard.contains(repo.resolve("A.groovy")))
+          .singleElement()
+          .satisfies(shard -> assertThat(shard).contains(repo.resolve("B.groovy")));
+        // while each YAML file is parsed on its own, so they are spread out
+        assertThat(shards).allSatisfy(shard -> assertThat(shard).filteredOn(p -> p.toString().endsWith(".yml"))
+          .hasSize(1));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void perWorkerParsersAreGroupedUnlessPerFile(boolean perFile) throws Exception {
+        writeString(repo.resolve("a.txt"), "a\n");
+        writeString(repo.resolve("b.txt"), "b\n");
+
+        List<List<Path>> shards = OmniParser.builder(OmniParser.perWorker(PlainTextParser.builder(), perFile))
+          .parallel(true)
+          .build()
+          .shards(repo, 2);
+
+        assertThat(shards).filteredOn(shard -> !shard.isEmpty()).hasSize(perFile ? 2 : 1);
+    }
+
+    @Test
+    void parseTimeoutAbandonsSlowInputs() throws Exception {
+        Path slow = repo.resolve("slow.txt");
+        writeString(slow, "slow");
+        Path fast = repo.resolve("fast.txt");
+        writeString(fast, "fast");
+
+        PlainTextParser plainText = PlainTextParser.builder().build();
+        Parser sleepy = new Parser() {
+            @Override
+            public Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo, ExecutionContext ctx) {
+                for (Input input : sources) {
+                    if (input.getPath().endsWith("slow.txt")) {
+                        try {
+                            Thread.sleep(60_000);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+                return plainText.parseInputs(sources, relativeTo, ctx);
+            }
+
+            @Override
+            public boolean accept(Path path) {
+                return plainText.accept(path);
+            }
+
+            @Override
+            public Path sourcePathFromSourceText(Path prefix, String sourceCode) {
+                return plainText.sourcePathFromSourceText(prefix, sourceCode);
+            }
+        };
+
+        // Each input is its own task, so only the slow one is abandoned
+        Parser perFile = OmniParser.perWorker(new Parser.Builder(PlainText.class) {
+            @Override
+            public Parser build() {
+                return sleepy;
+            }
+
+            @Override
+            public String getDslName() {
+                return "sleepy";
+            }
+        }, true);
+
+        List<SourceFile> parsed = OmniParser.builder(perFile)
+          .parallel(true)
+          .parseTimeout(Duration.ofMillis(200))
+          .build()
+          .parse(List.of(slow, fast), repo, new InMemoryExecutionContext())
+          .toList();
+
+        assertThat(parsed).hasSize(2);
+        assertThat(parsed).filteredOn(ParseError.class::isInstance)
+          .singleElement()
+          .extracting(SourceFile::getSourcePath)
+          .isEqualTo(Path.of("slow.txt"));
+    }
+
+    @Test
+    void parseTimeoutScalesWithGroupedInputs() throws Exception {
+        List<Path> paths = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Path path = repo.resolve("file" + i + ".txt");
+            writeString(path, "file " + i);
+            paths.add(path);
+        }
+
+        PlainTextParser plainText = PlainTextParser.builder().build();
+        Parser.Builder slowBuilder = new Parser.Builder(PlainText.class) {
+            @Override
+            public Parser build() {
+                return new Parser() {
+                    @Override
+                    public Stream<SourceFile> parseInputs(Iterable<Input> sources, @Nullable Path relativeTo, ExecutionContext ctx) {
+                        for (Input ignored : sources) {
+                            try {
+                                Thread.sleep(300);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return plainText.parseInputs(sources, relativeTo, ctx);
+                    }
+
+                    @Override
+                    public boolean accept(Path path) {
+                        return plainText.accept(path);
+                    }
+
+                    @Override
+                    public Path sourcePathFromSourceText(Path prefix, String sourceCode) {
+                        return plainText.sourcePathFromSourceText(prefix, sourceCode);
+                    }
+                };
+            }
+
+            @Override
+            public String getDslName() {
+                return "slow";
+            }
+        };
+
+        // The three inputs are parsed together in 900ms, within three times the timeout
+        List<SourceFile> parsed = OmniParser.builder(OmniParser.perWorker(slowBuilder))
+          .parallel(true)
+          .parseTimeout(Duration.ofMillis(500))
+          .build()
+          .parse(paths, repo, new InMemoryExecutionContext())
+          .toList();
+
+        assertThat(parsed).hasSize(3).noneMatch(ParseError.class::isInstance);
+    }
+
+    @Test
+    void parseTimeoutRequiresParallelParsing() {
+        assertThatThrownBy(() -> OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parseTimeout(Duration.ofSeconds(1))
+          .build())
+          .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void virtualThreadReadsRequireParallelParsingOrPrefetching() {
+        assertThatThrownBy(() -> OmniParser.builder(OmniParser.defaultResourceParsers())
+          .virtualThreadReads(true)
+          .build())
+          .isInstanceOf(IllegalStateException.class);
+
+        OmniParser.builder(OmniParser.defaultResourceParsers())
+          .virtualThreadReads(true)
+          .prefetch(4, Long.MAX_VALUE)
+          .build();
+    }
+
     private static List<Path> normalized(List<Path> paths) {
         return paths.stream().map(Path::normalize).toList();
     }
@@ -241,6 +975,115 @@ class OmniParserTest {
         );
     }
 
+    @Test
+    void hardLinkedCopiesAreSkipped() throws Exception {
+        mkdirs(repo.resolve("a").toFile());
+        mkdirs(repo.resolve("b").toFile());
+        writeString(repo.resolve("a/config.yml"), "key: value\n");
+        Files.createLink(repo.resolve("b/config.yml"), repo.resolve("a/config.yml"));
+        touch(repo.resolve("b/other.yml"));
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .skipLinkedCopies(true)
+          .build();
+        List<Path> paths = parser.acceptedPaths(repo);
+        assertThat(paths).contains(repo.resolve("b/other.yml"));
+        assertThat(paths).filteredOn(p -> p.endsWith("config.yml")).hasSize(1);
+        assertThat(parser.getSkippedLinkedCopies()).isEqualTo(1);
+
+        assertThat(OmniParser.builder(OmniParser.defaultResourceParsers()).build().acceptedPaths(repo))
+          .filteredOn(p -> p.endsWith("config.yml")).hasSize(2);
+    }
+
+    @Test
+    void linkUnderUnacceptedNameDoesNotHideAcceptedFile() throws Exception {
+        mkdirs(repo.resolve("a").toFile());
+        mkdirs(repo.resolve("b").toFile());
+        writeString(repo.resolve("b/config.yml"), "key: value\n");
+        Files.createLink(repo.resolve("a/config.yml.bak"), repo.resolve("b/config.yml"));
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .skipLinkedCopies(true)
+          .build();
+        assertThat(parser.acceptedPaths(repo)).containsExactly(repo.resolve("b/config.yml"));
+        assertThat(parser.getSkippedLinkedCopies()).isZero();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void cancellationStopsWalkAndParse(boolean gitRepo) throws Exception {
+        touch(repo.resolve("a.xml"));
+        touch(repo.resolve("b.xml"));
+        touch(repo.resolve("c.xml"));
+        if (gitRepo) {
+            initGit(repo);
+        }
+
+        CancellationToken token = new CancellationToken();
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .cancellationToken(token)
+          .build();
+
+        try (Stream<SourceFile> sourceFiles = parser.parseAll(repo)) {
+            Iterator<SourceFile> it = sourceFiles.iterator();
+            assertThat(it.next()).isNotNull();
+            token.cancel();
+            assertThatThrownBy(() -> it.forEachRemaining(sourceFile -> {
+            })).isInstanceOf(CancellationException.class);
+        }
+        assertThatThrownBy(() -> parser.acceptedPaths(repo)).isInstanceOf(CancellationException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void cancellationTokenDoesNotOutliveUnclosedStream(boolean parallel) throws Exception {
+        for (int i = 0; i < 4; i++) {
+            writeString(repo.resolve("file" + i + ".yml"), "key: " + i + "\n");
+        }
+
+        CancellationToken token = new CancellationToken();
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .parallel(parallel)
+          .prefetch(2, Long.MAX_VALUE)
+          .cancellationToken(token)
+          .build();
+
+        // the stream is deliberately not closed
+        assertThat(parser.parseAll(repo).toList()).hasSize(4);
+        assertThat(token.getListenerCount()).isZero();
+    }
+
+    @Test
+    void gitIgnoreIsHonoredOutsideOfGitRepositoriesOnRequest() throws Exception {
+        writeString(repo.resolve(".gitignore"), "dist/\n*.log.xml\n");
+        mkdirs(repo.resolve("dist").toFile());
+        touch(repo.resolve("dist/bundle.xml"));
+        touch(repo.resolve("app.xml"));
+        touch(repo.resolve("debug.log.xml"));
+        mkdirs(repo.resolve("module/generated").toFile());
+        writeString(repo.resolve("module/.gitignore"), "generated/\n!debug.log.xml\n");
+        touch(repo.resolve("module/generated/out.xml"));
+        touch(repo.resolve("module/debug.log.xml"));
+
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers())
+          .respectGitIgnore(true)
+          .build();
+        assertThat(parser.acceptedPaths(repo)).extracting(p -> repo.relativize(p).toString())
+          .contains("app.xml", separatorsToSystem("module/debug.log.xml"))
+          .doesNotContain(
+            "debug.log.xml",
+            separatorsToSystem("dist/bundle.xml"),
+            separatorsToSystem("module/generated/out.xml")
+          );
+        assertThat(parser.acceptedPaths(repo, repo.resolve("module")))
+          .containsExactly(repo.resolve("module/debug.log.xml"));
+
+        // unless asked to, a walk outside of a git repository enters everything that is not excluded
+        OmniParser unfiltered = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        assertThat(unfiltered.acceptedPaths(repo)).contains(
+          repo.resolve("debug.log.xml"), repo.resolve("dist/bundle.xml"), repo.resolve("module/generated/out.xml"));
+    }
+
     void initGit(Path repositoryPath) {
         try (Git git = Git.init().setDirectory(repositoryPath.toFile()).call()) {
             git.remoteSetUrl().setRemoteName("origin").setRemoteUri(
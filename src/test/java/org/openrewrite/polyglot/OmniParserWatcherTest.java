@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.polyglot.OmniParserWatcher.ChangeEvent;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.Files.writeString;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.jgit.util.FileUtils.mkdirs;
+
+class OmniParserWatcherTest {
+
+    @TempDir
+    Path repo;
+
+    @Test
+    void reparsesOnlyChangedFiles() throws Exception {
+        writeString(repo.resolve("application.yml"), "key: value\n");
+        writeString(repo.resolve("pom.xml"), "<project/>\n");
+
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (OmniParserWatcher watcher = OmniParserWatcher.poll(parser, repo, Duration.ofMillis(100), events::add)) {
+            assertThat(watcher.getSourceFiles()).containsOnlyKeys(repo.resolve("application.yml"), repo.resolve("pom.xml"));
+
+            writeString(repo.resolve("application.yml"), "key: another value\n");
+            ChangeEvent modified = events.poll(10, TimeUnit.SECONDS);
+            assertThat(modified).isNotNull();
+            assertThat(modified.getKind()).isEqualTo(ChangeEvent.Kind.Modified);
+            assertThat(modified.getPath()).isEqualTo(repo.resolve("application.yml"));
+            assertThat(modified.getSourceFile().printAll()).isEqualTo("key: another value\n");
+
+            // ignored directories are not picked up
+            mkdirs(repo.resolve("build").toFile());
+            writeString(repo.resolve("build/generated.yml"), "key: value\n");
+            Files.delete(repo.resolve("pom.xml"));
+            ChangeEvent deleted = events.poll(10, TimeUnit.SECONDS);
+            assertThat(deleted).isNotNull();
+            assertThat(deleted.getKind()).isEqualTo(ChangeEvent.Kind.Deleted);
+            assertThat(deleted.getPath()).isEqualTo(repo.resolve("pom.xml"));
+            assertThat(watcher.getSourceFiles()).containsOnlyKeys(repo.resolve("application.yml"));
+        }
+    }
+
+    @Test
+    void watchServicePicksUpAddedAndDeletedFiles() throws Exception {
+        writeString(repo.resolve("application.yml"), "key: value\n");
+
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (OmniParserWatcher watcher = OmniParserWatcher.watch(parser, repo, events::add)) {
+            assertThat(watcher.getSourceFiles()).containsOnlyKeys(repo.resolve("application.yml"));
+
+            // files in directories created after the watch started are picked up too
+            mkdirs(repo.resolve("config").toFile());
+            writeString(repo.resolve("config/other.yml"), "other: value\n");
+            ChangeEvent added = events.poll(10, TimeUnit.SECONDS);
+            assertThat(added).isNotNull();
+            assertThat(added.getKind()).isEqualTo(ChangeEvent.Kind.Added);
+            assertThat(added.getPath()).isEqualTo(repo.resolve("config/other.yml"));
+
+            Files.delete(repo.resolve("application.yml"));
+            ChangeEvent deleted;
+            do {
+                // the new file may also be reported as modified, depending on when its directory was registered
+                deleted = events.poll(10, TimeUnit.SECONDS);
+                assertThat(deleted).isNotNull();
+            } while (deleted.getKind() != ChangeEvent.Kind.Deleted);
+            assertThat(deleted.getPath()).isEqualTo(repo.resolve("application.yml"));
+            assertThat(watcher.getSourceFiles()).containsOnlyKeys(repo.resolve("config/other.yml"));
+        }
+    }
+
+    @Test
+    void keepsWatchingAfterFailure() throws Exception {
+        writeString(repo.resolve("application.yml"), "key: value\n");
+
+        BlockingQueue<Throwable> errors = new LinkedBlockingQueue<>();
+        BlockingQueue<ChangeEvent> events = new LinkedBlockingQueue<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutionContext ctx = new InMemoryExecutionContext(errors::add);
+        OmniParser parser = OmniParser.builder(OmniParser.defaultResourceParsers()).build();
+        try (OmniParserWatcher ignored = OmniParserWatcher.watch(parser, repo, ctx, event -> {
+            if (failed.compareAndSet(false, true)) {
+                throw new IllegalStateException("listener failed");
+            }
+            events.add(event);
+        })) {
+            writeString(repo.resolve("application.yml"), "key: another value\n");
+            Throwable error = errors.poll(10, TimeUnit.SECONDS);
+            assertThat(error).hasMessage("listener failed");
+
+            writeString(repo.resolve("application.yml"), "key: third value\n");
+            ChangeEvent modified;
+            do {
+                modified = events.poll(10, TimeUnit.SECONDS);
+                assertThat(modified).isNotNull();
+            } while (!"key: third value\n".equals(modified.getSourceFile().printAll()));
+            assertThat(modified.getKind()).isEqualTo(ChangeEvent.Kind.Modified);
+        }
+    }
+}
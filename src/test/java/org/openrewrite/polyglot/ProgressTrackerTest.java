@@ -0,0 +1,87 @@
+/*
+ * Copyright 2025 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.polyglot;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ProgressTrackerTest {
+
+    @Test
+    void rateAndEta() {
+        AtomicLong now = new AtomicLong();
+        AtomicLong delegateSteps = new AtomicLong();
+        StringBuilder extraMessage = new StringBuilder();
+        ProgressBar delegate = new NoopProgressBar() {
+            @Override
+            public void step() {
+                delegateSteps.incrementAndGet();
+            }
+
+            @Override
+            public ProgressBar setExtraMessage(String message) {
+                extraMessage.setLength(0);
+                extraMessage.append(message);
+                return this;
+            }
+        };
+
+        ProgressTracker tracker = new ProgressTracker(delegate, now::get);
+        tracker.setMax(100);
+        assertThat(tracker.getEta()).isNull();
+
+        // 10 files of 1 KiB each per second
+        for (int i = 0; i < 20; i++) {
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            tracker.step(1024);
+        }
+
+        assertThat(tracker.getCount()).isEqualTo(20);
+        assertThat(delegateSteps.get()).isEqualTo(20);
+        assertThat(tracker.getBytes()).isEqualTo(20 * 1024);
+        assertThat(tracker.getFilesPerSecond()).isCloseTo(10, within(0.01));
+        assertThat(tracker.getBytesPerSecond()).isCloseTo(10 * 1024, within(1.0));
+        assertThat(tracker.getEta()).isEqualTo(Duration.ofSeconds(8));
+        assertThat(extraMessage.toString()).isEqualTo("(10.0 files/s, 10.0 KB/s, ETA 0:00:08)");
+    }
+
+    @Test
+    void extraMessageKeepsRate() {
+        AtomicLong now = new AtomicLong();
+        @Nullable String[] last = new String[1];
+        ProgressTracker tracker = new ProgressTracker(new NoopProgressBar() {
+            @Override
+            public ProgressBar setExtraMessage(String message) {
+                last[0] = message;
+                return this;
+            }
+        }, now::get);
+
+        tracker.setExtraMessage("parsing");
+        assertThat(last[0]).isEqualTo("parsing");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        tracker.step();
+        assertThat(last[0]).isEqualTo("parsing (1.0 files/s)");
+    }
+}
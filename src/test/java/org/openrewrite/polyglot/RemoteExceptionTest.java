@@ -74,6 +74,15 @@ class RemoteExceptionTest {
         assertThat(decoded.isPartialSuccess()).isEqualTo(remote.isPartialSuccess());
     }
 
+    @Test
+    void stackTraceWithoutCauseStartsAtCaller() {
+        RemoteException remote = RemoteException.builder("This is a bad thing").build();
+
+        assertThat(remote.getSanitizedStackTrace())
+          .startsWith("  org.openrewrite.polyglot.RemoteExceptionTest.stackTraceWithoutCauseStartsAtCaller")
+          .doesNotContain("RemoteException$Builder");
+    }
+
     @Test
     void printStackTrace() {
         RemoteException remote = RemoteException.builder("This is a bad thing")
@@ -18,8 +18,11 @@ package org.openrewrite.polyglot;
 import org.jspecify.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -75,6 +78,100 @@ class RemoteProgressBarTest {
         }
     }
 
+    @Test
+    void stepsCarryInputSize() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicLong bytes = new AtomicLong();
+        ProgressBar progressBar = new NoopProgressBar() {
+            @Override
+            public void step(long b) {
+                bytes.set(b);
+                latch.countDown();
+            }
+        };
+        try (RemoteProgressBarReceiver receiver = new RemoteProgressBarReceiver(progressBar);
+             ProgressBar sender = new RemoteProgressBarSender(receiver.getPort())) {
+            sender.step(1024);
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(bytes.get()).isEqualTo(1024);
+    }
+
+    @Test
+    void aggregatesSenders() throws Exception {
+        CountDownLatch steps = new CountDownLatch(5);
+        AtomicInteger max = new AtomicInteger();
+        try (ProgressBar progressBar = new NoopProgressBar() {
+            @Override
+            public void step() {
+                steps.countDown();
+            }
+
+            @Override
+            public ProgressBar setMax(int m) {
+                max.set(m);
+                return this;
+            }
+        };
+             RemoteProgressBarReceiver receiver = new RemoteProgressBarReceiver(progressBar);
+             RemoteProgressBarSender worker1 = new RemoteProgressBarSender(receiver.getPort());
+             RemoteProgressBarSender worker2 = new RemoteProgressBarSender(receiver.getPort())) {
+            worker1.setMax(10);
+            worker2.setMax(20);
+            worker1.step();
+            worker1.step();
+            worker2.step();
+            worker2.step();
+            worker2.step();
+            worker2.heartbeat();
+            assertThat(steps.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(max.get()).isEqualTo(30);
+            assertThat(receiver.getMax()).isEqualTo(30);
+            assertThat(receiver.getSenders())
+              .hasSize(2)
+              .allMatch(RemoteProgressBarReceiver.SenderProgress::isAlive)
+              .extracting(RemoteProgressBarReceiver.SenderProgress::getSteps)
+              .containsExactlyInAnyOrder(2L, 3L);
+        }
+    }
+
+    @Test
+    void deadSendersDropOutOfMax() throws Exception {
+        AtomicInteger max = new AtomicInteger();
+        try (ProgressBar progressBar = new NoopProgressBar() {
+            @Override
+            public ProgressBar setMax(int m) {
+                max.set(m);
+                return this;
+            }
+        };
+             RemoteProgressBarReceiver receiver = new RemoteProgressBarReceiver(progressBar, Duration.ofMillis(500));
+             RemoteProgressBarSender alive = new RemoteProgressBarSender(receiver.getPort());
+             RemoteProgressBarSender dead = new RemoteProgressBarSender(receiver.getPort())) {
+            alive.heartbeatEvery(Duration.ofMillis(50));
+            alive.setMax(10);
+            dead.setMax(20);
+            awaitMax(max, 30);
+
+            // the dead sender goes silent while the other keeps sending heartbeats
+            awaitMax(max, 10);
+            assertThat(receiver.getMax()).isEqualTo(10);
+            assertThat(receiver.getSenders())
+              .filteredOn(RemoteProgressBarReceiver.SenderProgress::isAlive)
+              .extracting(RemoteProgressBarReceiver.SenderProgress::getMax)
+              .containsExactly(10);
+        }
+    }
+
+    private static void awaitMax(AtomicInteger max, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (max.get() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(max.get()).isEqualTo(expected);
+    }
+
     @Test
     void remoteException() {
         assertThatThrownBy(() -> {
@@ -19,6 +19,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.*;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.openrewrite.polyglot.RemoteProgressMessage.Type.*;
 
@@ -87,4 +88,28 @@ class RemoteProgressMessageTest {
         assertThat(message.getType()).isEqualTo(Step);
         assertThat(message.getMessage()).isNull();
     }
+
+    @Test
+    void unknownTypeIsDropped() {
+        byte[] packet = ("v2" + UUID.randomUUID() + "9" + "000" + "__EOM__").getBytes(UTF_8);
+
+        Map<UUID, RemoteProgressMessage> incompleteMessages = new HashMap<>();
+        assertThat(RemoteProgressMessage.read(packet, packet.length, incompleteMessages)).isNull();
+        assertThat(incompleteMessages).isEmpty();
+    }
+
+    @Test
+    void heartbeatIsHiddenFromVersion2Receivers() {
+        List<byte[]> packets = RemoteProgressMessage.toPackets(Heartbeat, null);
+        assertThat(packets).allMatch(packet -> new String(packet, 0, 2, UTF_8).equals("v3"));
+
+        Map<UUID, RemoteProgressMessage> incompleteMessages = new HashMap<>();
+        RemoteProgressMessage message = RemoteProgressMessage.read(packets.get(0), packets.get(0).length, incompleteMessages);
+        assertThat(message).isNotNull();
+        assertThat(message.getType()).isEqualTo(Heartbeat);
+
+        // the type was introduced with version 3, so a version 2 packet claiming it is dropped
+        byte[] v2 = ("v2" + UUID.randomUUID() + Heartbeat.ordinal() + "000" + "__EOM__").getBytes(UTF_8);
+        assertThat(RemoteProgressMessage.read(v2, v2.length, incompleteMessages)).isNull();
+    }
 }